@@ -0,0 +1,237 @@
+// Benchmarks.java
+// Micro-benchmark harness for every stage of the detection pipeline.
+// Each benchmark runs warmup iterations, then measured iterations over a corpus
+// (see CorpusGenerator) and reports throughput (MB/s, blocks/s) and allocation rate.
+// Results can be saved and compared against a baseline to catch regressions.
+// Usage: java Benchmarks <corpus_dir> [--warmup n] [--iterations n] [--only name]
+//                        [--max-mb n] [--save file] [--baseline file] [--tolerance 0.10]
+// Place this file in the java/ directory.
+
+import java.io.*;
+import java.lang.management.ManagementFactory;
+import java.nio.file.*;
+import java.util.*;
+
+public class Benchmarks {
+    // One benchmarked operation: processes some input once and reports what it did
+    interface Op {
+        void run(Counters c) throws Exception;
+    }
+
+    // What one invocation of an operation processed
+    static class Counters {
+        long bytes;
+        long blocks;
+        long sink; // Consumed results, so the JIT cannot drop the work
+    }
+
+    static class Result {
+        String name;
+        double mbPerSec;
+        double blocksPerSec;
+        double allocMbPerSec;
+        double allocBytesPerBlock;
+    }
+
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    private final int warmup;
+    private final int iterations;
+    private long globalSink;
+
+    Benchmarks(int warmup, int iterations) {
+        this.warmup = warmup;
+        this.iterations = iterations;
+    }
+
+    // Run warmup + measured iterations of an operation
+    Result measure(String name, Op op) throws Exception {
+        for (int i = 0; i < warmup; i++) {
+            Counters c = new Counters();
+            op.run(c);
+            globalSink += c.sink;
+        }
+        long tid = Thread.currentThread().getId();
+        long bytes = 0, blocks = 0, nanos = 0, alloc = 0;
+        for (int i = 0; i < iterations; i++) {
+            Counters c = new Counters();
+            long a0 = THREADS.getThreadAllocatedBytes(tid);
+            long t0 = System.nanoTime();
+            op.run(c);
+            nanos += System.nanoTime() - t0;
+            alloc += THREADS.getThreadAllocatedBytes(tid) - a0;
+            bytes += c.bytes;
+            blocks += c.blocks;
+            globalSink += c.sink;
+        }
+        double secs = nanos / 1e9;
+        Result r = new Result();
+        r.name = name;
+        r.mbPerSec = bytes / (1024.0 * 1024.0) / secs;
+        r.blocksPerSec = blocks / secs;
+        r.allocMbPerSec = alloc / (1024.0 * 1024.0) / secs;
+        r.allocBytesPerBlock = blocks > 0 ? (double) alloc / blocks : 0;
+        System.out.printf("%-28s %10.1f MB/s %14.0f blocks/s %10.1f MB/s alloc %10.0f B/block\n",
+                name, r.mbPerSec, r.blocksPerSec, r.allocMbPerSec, r.allocBytesPerBlock);
+        return r;
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1) {
+            System.out.println("Usage: java Benchmarks <corpus_dir> [--warmup n] [--iterations n] [--only name] "
+                    + "[--max-mb n] [--save file] [--baseline file] [--tolerance 0.10]");
+            return;
+        }
+        Path corpus = Paths.get(args[0]);
+        int warmup = 2, iterations = 5;
+        long maxBytes = 256L * 1024 * 1024;
+        String only = null;
+        Path save = null, baseline = null;
+        double tolerance = 0.10;
+        for (int a = 1; a < args.length; a++) {
+            switch (args[a]) {
+                case "--warmup": warmup = Integer.parseInt(args[++a]); break;
+                case "--iterations": iterations = Integer.parseInt(args[++a]); break;
+                case "--only": only = args[++a]; break;
+                case "--max-mb": maxBytes = (long) (Double.parseDouble(args[++a]) * 1024 * 1024); break;
+                case "--save": save = Paths.get(args[++a]); break;
+                case "--baseline": baseline = Paths.get(args[++a]); break;
+                case "--tolerance": tolerance = Double.parseDouble(args[++a]); break;
+                default:
+                    System.out.println("Unknown argument: " + args[a]);
+                    return;
+            }
+        }
+
+        DirectoryScanner scanner = new DirectoryScanner(new ArrayList<>(), new ArrayList<>(), 1, 1);
+        List<Path> all = scanner.listFiles(Collections.singletonList(corpus));
+
+        // Every stage works on a bounded prefix of the corpus, read before anything is timed
+        List<SourceFile> javaSources = new ArrayList<>();
+        List<SourceFile> pythonSources = new ArrayList<>();
+        List<CodeBlock> blocks = new ArrayList<>();
+        List<String> texts = new ArrayList<>();
+        List<Path> loadedFiles = new ArrayList<>();
+        long loaded = 0;
+        for (Path p : all) {
+            if (loaded >= maxBytes) break;
+            SourceFile src = SourceFile.read(p);
+            (p.toString().endsWith(".java") ? javaSources : pythonSources).add(src);
+            List<CodeBlock> fileBlocks = Main.extractBlocks(src);
+            blocks.addAll(fileBlocks);
+            for (CodeBlock b : fileBlocks) texts.add(b.code());
+            loadedFiles.add(p);
+            loaded += Files.size(p);
+        }
+        long textBytes = 0;
+        for (String t : texts) textBytes += t.length();
+        final long normalizeBytes = textBytes;
+        final long loadedBytes = loaded;
+        System.out.printf("Corpus: %d Java files, %d Python files, %d blocks in memory (%.1f MB)\n\n",
+                javaSources.size(), pythonSources.size(), blocks.size(), loaded / (1024.0 * 1024.0));
+
+        Benchmarks bench = new Benchmarks(warmup, iterations);
+        List<Result> results = new ArrayList<>();
+        Map<String, Op> ops = new LinkedHashMap<>();
+        ops.put("JavaBlocks.extract", c -> {
+            for (SourceFile src : javaSources) {
+                List<CodeBlock> bs = JavaBlocks.extractJavaBlocks(src);
+                c.bytes += src.text.length();
+                c.blocks += bs.size();
+            }
+        });
+        ops.put("PythonBlocks.extract", c -> {
+            for (SourceFile src : pythonSources) {
+                List<CodeBlock> bs = PythonBlocks.extractPythonBlocks(src);
+                c.bytes += src.text.length();
+                c.blocks += bs.size();
+            }
+        });
+        ops.put("DuplicateDetection.normalize", c -> {
+            for (int i = 0; i < texts.size(); i++) {
+                c.sink += DuplicateDetection.normalizeCode(texts.get(i), blocks.get(i).language).length();
+            }
+            c.bytes = normalizeBytes;
+            c.blocks = texts.size();
+        });
+        ops.put("TokenTable.tokenize", c -> {
+            TokenTable table = new TokenTable(true);
+            for (CodeBlock b : blocks) c.sink += table.tokenize(b).length();
+            c.bytes = normalizeBytes;
+            c.blocks = blocks.size();
+        });
+        ops.put("DuplicateDetection.mark", c -> {
+            for (CodeBlock b : blocks) {
+                b.fingerprint = null;
+                b.isDuplicate = false;
+            }
+            c.sink += DuplicateDetection.markDuplicates(blocks).size();
+            c.bytes = normalizeBytes;
+            c.blocks = blocks.size();
+        });
+        ops.put("RepeatDetection.find", c -> {
+            c.sink += new RepeatDetection(50).findRepeats(loadedFiles).size();
+            c.bytes = loadedBytes;
+            c.blocks = blocks.size();
+        });
+        ops.put("JavaParser.extract", c -> {
+            for (SourceFile src : javaSources) {
+                c.blocks += JavaParserDuplicateDetection.extractBlocks(src).size();
+                c.bytes += src.text.length();
+            }
+        });
+        for (Map.Entry<String, Op> e : ops.entrySet()) {
+            if (only != null && !e.getKey().contains(only)) continue;
+            results.add(bench.measure(e.getKey(), e.getValue()));
+        }
+        System.out.println("\n(sink " + bench.globalSink + ")");
+
+        if (save != null) {
+            saveResults(results, save);
+            System.out.println("Results saved to " + save);
+        }
+        if (baseline != null && !compare(results, loadResults(baseline), tolerance)) {
+            System.exit(1);
+        }
+    }
+
+    private static void saveResults(List<Result> results, Path file) throws IOException {
+        Properties props = new Properties();
+        for (Result r : results) {
+            props.setProperty(r.name + ".mb_per_sec", String.valueOf(r.mbPerSec));
+            props.setProperty(r.name + ".blocks_per_sec", String.valueOf(r.blocksPerSec));
+            props.setProperty(r.name + ".alloc_bytes_per_block", String.valueOf(r.allocBytesPerBlock));
+        }
+        try (Writer w = Files.newBufferedWriter(file)) {
+            props.store(w, "Benchmarks results");
+        }
+    }
+
+    private static Properties loadResults(Path file) throws IOException {
+        Properties props = new Properties();
+        try (Reader r = Files.newBufferedReader(file)) {
+            props.load(r);
+        }
+        return props;
+    }
+
+    // Flags any benchmark whose throughput dropped (or allocation grew) by more than the tolerance
+    private static boolean compare(List<Result> results, Properties baseline, double tolerance) {
+        boolean ok = true;
+        System.out.println();
+        for (Result r : results) {
+            String mb = baseline.getProperty(r.name + ".mb_per_sec");
+            String alloc = baseline.getProperty(r.name + ".alloc_bytes_per_block");
+            if (mb == null) continue;
+            double baseMb = Double.parseDouble(mb);
+            double baseAlloc = alloc != null ? Double.parseDouble(alloc) : 0;
+            boolean slower = r.mbPerSec < baseMb * (1 - tolerance);
+            boolean heavier = baseAlloc > 0 && r.allocBytesPerBlock > baseAlloc * (1 + tolerance);
+            System.out.printf("%-28s %s (%.1f -> %.1f MB/s, %.0f -> %.0f B/block)\n", r.name,
+                    slower || heavier ? "REGRESSION" : "ok", baseMb, r.mbPerSec, baseAlloc, r.allocBytesPerBlock);
+            if (slower || heavier) ok = false;
+        }
+        return ok;
+    }
+}
@@ -0,0 +1,148 @@
+// CodeNormalizer.java
+// Single-pass, language-aware code normalizer shared by the Java and Python paths.
+// A hand-written character state machine drops comments and whitespace, keeps
+// string literals intact and writes into a reusable buffer or a running hash.
+// Place this file in the java/ directory.
+
+public final class CodeNormalizer {
+    // Languages understood by the normalizer
+    public enum Language {
+        JAVA,    // // and /* */ comments, "..." strings, '.' chars, """ text blocks
+        PYTHON,  // # comments, '...' / "..." strings, ''' / """ triple-quoted strings
+        GENERIC; // Both comment styles (used when the language is unknown)
+
+        public static Language of(String language) {
+            if ("java".equals(language)) return JAVA;
+            if ("python".equals(language)) return PYTHON;
+            return GENERIC;
+        }
+    }
+
+    // Lexer states
+    private static final int CODE = 0;
+    private static final int LINE_COMMENT = 1;
+    private static final int BLOCK_COMMENT = 2;
+    private static final int STRING = 3;
+
+    // Per-thread scratch buffer and hasher, reused across calls
+    private static final ThreadLocal<StringBuilder> BUFFER = ThreadLocal.withInitial(() -> new StringBuilder(256));
+    private static final ThreadLocal<Fingerprint.Hasher> HASHER = ThreadLocal.withInitial(Fingerprint.Hasher::new);
+
+    private CodeNormalizer() {}
+
+    // Normalize a whole string
+    public static String normalize(CharSequence code, Language lang, boolean lowerCase) {
+        return normalize(code, 0, code.length(), lang, lowerCase);
+    }
+
+    // Normalize code[start, end) and return the result as a String
+    public static String normalize(CharSequence code, int start, int end, Language lang, boolean lowerCase) {
+        StringBuilder sb = BUFFER.get();
+        sb.setLength(0);
+        run(code, start, end, lang, lowerCase, sb, null);
+        return sb.toString();
+    }
+
+    // Fingerprint the normalized form of a whole string without materializing it
+    public static Fingerprint fingerprint(CharSequence code, Language lang, boolean lowerCase) {
+        return fingerprint(code, 0, code.length(), lang, lowerCase);
+    }
+
+    // Fingerprint the normalized form of code[start, end) without materializing it
+    public static Fingerprint fingerprint(CharSequence code, int start, int end, Language lang, boolean lowerCase) {
+        Fingerprint.Hasher h = HASHER.get();
+        h.reset();
+        run(code, start, end, lang, lowerCase, null, h);
+        return h.finish();
+    }
+
+    // The state machine. Exactly one of sb / h is non-null.
+    private static void run(CharSequence code, int start, int end, Language lang, boolean lowerCase,
+                            StringBuilder sb, Fingerprint.Hasher h) {
+        boolean slashComments = lang != Language.PYTHON;
+        boolean hashComments = lang != Language.JAVA;
+        int state = CODE;
+        char quote = 0;        // Quote character of the current string literal
+        boolean triple = false; // Inside a triple-quoted string / text block
+        int i = start;
+        while (i < end) {
+            char c = code.charAt(i);
+            switch (state) {
+                case CODE:
+                    if (c == '/' && slashComments && i + 1 < end) {
+                        char n = code.charAt(i + 1);
+                        if (n == '/') { state = LINE_COMMENT; i += 2; continue; }
+                        if (n == '*') { state = BLOCK_COMMENT; i += 2; continue; }
+                    }
+                    if (c == '#' && hashComments) { state = LINE_COMMENT; i++; continue; }
+                    if (c == '"' || c == '\'') {
+                        quote = c;
+                        triple = i + 2 < end && code.charAt(i + 1) == c && code.charAt(i + 2) == c
+                                && (c == '"' || lang != Language.JAVA);
+                        int len = triple ? 3 : 1;
+                        for (int k = 0; k < len; k++) emit(c, sb, h);
+                        i += len;
+                        state = STRING;
+                        continue;
+                    }
+                    if (!Character.isWhitespace(c)) {
+                        emit(lowerCase ? Character.toLowerCase(c) : c, sb, h);
+                    }
+                    i++;
+                    break;
+                case LINE_COMMENT:
+                    if (c == '\n') state = CODE;
+                    i++;
+                    break;
+                case BLOCK_COMMENT:
+                    if (c == '*' && i + 1 < end && code.charAt(i + 1) == '/') {
+                        state = CODE;
+                        i += 2;
+                    } else {
+                        i++;
+                    }
+                    break;
+                case STRING:
+                    // Literals are copied verbatim, escapes included
+                    if (c == '\\' && i + 1 < end) {
+                        emit(c, sb, h);
+                        emit(code.charAt(i + 1), sb, h);
+                        i += 2;
+                        continue;
+                    }
+                    if (c == quote) {
+                        if (!triple) {
+                            emit(c, sb, h);
+                            state = CODE;
+                            i++;
+                            continue;
+                        }
+                        if (i + 2 < end && code.charAt(i + 1) == quote && code.charAt(i + 2) == quote) {
+                            emit(c, sb, h);
+                            emit(c, sb, h);
+                            emit(c, sb, h);
+                            state = CODE;
+                            i += 3;
+                            continue;
+                        }
+                    }
+                    if (c == '\n' && !triple) {
+                        // Unterminated single-line literal: recover at end of line
+                        state = CODE;
+                        i++;
+                        continue;
+                    }
+                    emit(c, sb, h);
+                    i++;
+                    break;
+                default:
+                    i++;
+            }
+        }
+    }
+
+    private static void emit(char c, StringBuilder sb, Fingerprint.Hasher h) {
+        if (sb != null) sb.append(c);
+        else h.update(c);
+    }
+}
@@ -0,0 +1,140 @@
+// CodeTokenizer.java
+// Minimal language-aware tokenizer over a range of source text.
+// Skips comments and whitespace like CodeNormalizer and yields words, numbers,
+// string literals and single punctuation characters, tracking line numbers.
+// Place this file in the java/ directory.
+
+public final class CodeTokenizer {
+    // Token kinds
+    public static final int WORD = 1;    // Identifier or keyword
+    public static final int NUMBER = 2;  // Numeric literal
+    public static final int STRING = 3;  // String / char literal, quotes included
+    public static final int PUNCT = 4;   // Any other single non-whitespace character
+
+    private final CharSequence code;
+    private final int end;
+    private final boolean slashComments;
+    private final boolean hashComments;
+    private final boolean javaQuotes;
+    private int pos;
+    private int line = 1;
+
+    // Current token (valid after next() returned true)
+    public int kind;
+    public int start;
+    public int stop;      // Exclusive
+    public int tokenLine; // 1-based line of the token start, relative to the range start
+
+    public CodeTokenizer(CharSequence code, CodeNormalizer.Language lang) {
+        this(code, 0, code.length(), lang);
+    }
+
+    public CodeTokenizer(CharSequence code, int start, int end, CodeNormalizer.Language lang) {
+        this.code = code;
+        this.pos = start;
+        this.end = end;
+        this.slashComments = lang != CodeNormalizer.Language.PYTHON;
+        this.hashComments = lang != CodeNormalizer.Language.JAVA;
+        this.javaQuotes = lang == CodeNormalizer.Language.JAVA;
+    }
+
+    // Advance to the next token; returns false at the end of the range
+    public boolean next() {
+        while (pos < end) {
+            char c = code.charAt(pos);
+            if (c == '\n') {
+                line++;
+                pos++;
+                continue;
+            }
+            if (Character.isWhitespace(c)) {
+                pos++;
+                continue;
+            }
+            if (c == '/' && slashComments && pos + 1 < end) {
+                char n = code.charAt(pos + 1);
+                if (n == '/') {
+                    skipLine();
+                    continue;
+                }
+                if (n == '*') {
+                    skipBlockComment();
+                    continue;
+                }
+            }
+            if (c == '#' && hashComments) {
+                skipLine();
+                continue;
+            }
+            start = pos;
+            tokenLine = line;
+            if (c == '"' || c == '\'') {
+                kind = STRING;
+                scanString(c);
+            } else if (isWordChar(c)) {
+                kind = Character.isDigit(c) ? NUMBER : WORD;
+                scanWord();
+            } else {
+                kind = PUNCT;
+                pos++;
+            }
+            stop = pos;
+            return true;
+        }
+        return false;
+    }
+
+    private void scanWord() {
+        while (pos < end && isWordChar(code.charAt(pos))) pos++;
+    }
+
+    private void skipLine() {
+        while (pos < end && code.charAt(pos) != '\n') pos++;
+    }
+
+    private void skipBlockComment() {
+        pos += 2;
+        while (pos < end) {
+            char c = code.charAt(pos);
+            if (c == '*' && pos + 1 < end && code.charAt(pos + 1) == '/') {
+                pos += 2;
+                return;
+            }
+            if (c == '\n') line++;
+            pos++;
+        }
+    }
+
+    private void scanString(char quote) {
+        boolean triple = pos + 2 < end && code.charAt(pos + 1) == quote && code.charAt(pos + 2) == quote
+                && (quote == '"' || !javaQuotes);
+        pos += triple ? 3 : 1;
+        while (pos < end) {
+            char c = code.charAt(pos);
+            if (c == '\\' && pos + 1 < end) {
+                if (code.charAt(pos + 1) == '\n') line++;
+                pos += 2;
+                continue;
+            }
+            if (c == quote) {
+                if (!triple) {
+                    pos++;
+                    return;
+                }
+                if (pos + 2 < end && code.charAt(pos + 1) == quote && code.charAt(pos + 2) == quote) {
+                    pos += 3;
+                    return;
+                }
+            }
+            if (c == '\n') {
+                if (!triple) return; // Unterminated single-line literal: stop at end of line
+                line++;
+            }
+            pos++;
+        }
+    }
+
+    private static boolean isWordChar(char c) {
+        return Character.isLetterOrDigit(c) || c == '_' || c == '$';
+    }
+}
@@ -0,0 +1,129 @@
+// ContentCache.java
+// In-run, content-addressed short-circuit for vendored copies.
+// Files: the blocks extracted from a file are kept under its raw-content hash (computed
+// anyway by SourceFile.read) and its extension, which picks the extractor; a byte-identical
+// file with the same extension gets copies of those blocks pointing at its own buffer, with
+// their fingerprints, so it is never re-parsed or re-normalized.
+// Blocks: a copied block takes the fingerprint of the block at the same ordinal in the
+// template, i.e. fingerprints are keyed by content hash and ordinal. Block text is never
+// hashed just to look it up, so equal blocks in files that differ elsewhere are normalized
+// once per file.
+// Unlike FingerprintIndex nothing is persisted; the cache lives as long as the run. With both,
+// the index is asked first and falls through to this cache on a miss.
+// Place this file in the java/ directory.
+
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class ContentCache {
+    // Futures, so that concurrent workers reaching copies of one file wait for a single extraction
+    // Extension -> content hash -> blocks
+    private final Map<String, ConcurrentHashMap<Fingerprint, CompletableFuture<List<CodeBlock>>>> blocks =
+            new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Fingerprint, CompletableFuture<List<JavaParserDuplicateDetection.Block>>> parsedBlocks =
+            new ConcurrentHashMap<>();
+    private final AtomicInteger fileHits = new AtomicInteger();
+    private final AtomicInteger blockHits = new AtomicInteger();
+
+    // Extract fingerprinted CodeBlocks, reusing the blocks of an identical file seen earlier in the run
+    public List<CodeBlock> extractBlocks(Path file) throws IOException {
+        return extractBlocks(SourceFile.read(file));
+    }
+
+    // Same for a file that has already been read
+    public List<CodeBlock> extractBlocks(SourceFile source) {
+        CompletableFuture<List<CodeBlock>> mine = new CompletableFuture<>();
+        CompletableFuture<List<CodeBlock>> template = blocks
+                .computeIfAbsent(extension(source.path), k -> new ConcurrentHashMap<>())
+                .putIfAbsent(source.contentHash, mine);
+        if (template != null) {
+            fileHits.incrementAndGet();
+            List<CodeBlock> copies = copy(await(template), source);
+            blockHits.addAndGet(copies.size());
+            return copies;
+        }
+        try {
+            List<CodeBlock> extracted = Main.extractBlocks(source);
+            DuplicateDetection.fingerprintAll(extracted);
+            mine.complete(extracted);
+            return extracted;
+        } catch (RuntimeException e) {
+            mine.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    // Same for JavaParser blocks; the cache only holds blocks extracted with one set of options
+    public List<JavaParserDuplicateDetection.Block> extractParsedBlocks(Path file, JavaParserDuplicateDetection.Options options)
+            throws IOException {
+        return extractParsedBlocks(SourceFile.read(file), options);
+    }
+
+    // Same for a file that has already been read; JavaParser parses every file as Java, whatever its extension
+    public List<JavaParserDuplicateDetection.Block> extractParsedBlocks(SourceFile source, JavaParserDuplicateDetection.Options options)
+            throws IOException {
+        CompletableFuture<List<JavaParserDuplicateDetection.Block>> mine = new CompletableFuture<>();
+        CompletableFuture<List<JavaParserDuplicateDetection.Block>> template = parsedBlocks.putIfAbsent(source.contentHash, mine);
+        if (template != null) {
+            fileHits.incrementAndGet();
+            List<JavaParserDuplicateDetection.Block> copies = new ArrayList<>();
+            for (JavaParserDuplicateDetection.Block t : await(template)) {
+                JavaParserDuplicateDetection.Block b =
+                        new JavaParserDuplicateDetection.Block(t.type, t.name, t.startLine, t.endLine, t.fingerprint);
+                b.source = source;
+                copies.add(b);
+            }
+            return copies;
+        }
+        try {
+            List<JavaParserDuplicateDetection.Block> extracted = JavaParserDuplicateDetection.extractBlocks(source, options);
+            mine.complete(extracted);
+            return extracted;
+        } catch (IOException | RuntimeException e) {
+            mine.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    // Files served from an identical earlier file
+    public int fileHits() {
+        return fileHits.get();
+    }
+
+    // Blocks whose normalization was skipped because they came from an identical file
+    public int blockHits() {
+        return blockHits.get();
+    }
+
+    private static String extension(String path) {
+        int dot = path.lastIndexOf('.');
+        return dot > path.lastIndexOf(File.separatorChar) ? path.substring(dot + 1) : "";
+    }
+
+    // Wait for another worker's extraction of the same content
+    private static <T> T await(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof IOException) throw new UncheckedIOException((IOException) e.getCause());
+            throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+        }
+    }
+
+    // Blocks of an identical file, pointed at another source buffer (offsets and lines are the same)
+    private static List<CodeBlock> copy(List<CodeBlock> template, SourceFile source) {
+        List<CodeBlock> copies = new ArrayList<>(template.size());
+        Map<CodeBlock, CodeBlock> copyOf = new IdentityHashMap<>();
+        for (CodeBlock t : template) {
+            CodeBlock b = new CodeBlock(t.name, t.startLine, t.endLine, t.language, source, t.startOffset, t.endOffset);
+            b.fingerprint = t.fingerprint;
+            if (t.parent != null) b.parent = copyOf.get(t.parent);
+            copyOf.put(t, b);
+            copies.add(b);
+        }
+        return copies;
+    }
+}
@@ -0,0 +1,179 @@
+// CorpusGenerator.java
+// Seeded generator of synthetic Java/Python corpora for benchmarking.
+// Produces files of roughly 64 KB until the requested total size is reached;
+// a configurable fraction of methods/functions are exact copies of earlier ones.
+// Usage: java CorpusGenerator <out_dir> <size_mb> [dup_ratio=0.2] [seed=42] [java|python|both]
+// Place this file in the java/ directory.
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+
+public class CorpusGenerator {
+    private static final int FILE_BYTES = 64 * 1024;
+    private static final int POOL_SIZE = 4096; // Methods remembered as copy sources
+
+    private static final String[] WORDS = {
+        "employee", "name", "count", "total", "index", "value", "result", "buffer", "item", "order",
+        "manager", "report", "status", "config", "cache", "user", "record", "entry", "node", "path"
+    };
+    private static final String[] MESSAGES = {
+        "Processing", "Welcome to the system", "Done", "Retrying", "Loading data", "Saving results", "Skipping"
+    };
+
+    private final Random rnd;
+    private final double dupRatio;
+    private final List<String> javaPool = new ArrayList<>();
+    private final List<String> pythonPool = new ArrayList<>();
+    private int counter;
+
+    public CorpusGenerator(long seed, double dupRatio) {
+        this.rnd = new Random(seed);
+        this.dupRatio = dupRatio;
+    }
+
+    // Write files into outDir until totalBytes have been generated; returns the files written
+    public List<Path> generate(Path outDir, long totalBytes, boolean java, boolean python) throws IOException {
+        Files.createDirectories(outDir);
+        List<Path> files = new ArrayList<>();
+        long written = 0;
+        int fileNo = 0;
+        while (written < totalBytes) {
+            boolean asJava = java && (!python || fileNo % 2 == 0);
+            String content = asJava ? javaFile(fileNo) : pythonFile(fileNo);
+            Path file = outDir.resolve(String.format("f%06d.%s", fileNo, asJava ? "java" : "py"));
+            byte[] bytes = content.getBytes(StandardCharsets.UTF_8);
+            Files.write(file, bytes);
+            files.add(file);
+            written += bytes.length;
+            fileNo++;
+        }
+        return files;
+    }
+
+    // One Java class of about FILE_BYTES
+    String javaFile(int fileNo) {
+        StringBuilder sb = new StringBuilder(FILE_BYTES + 1024);
+        sb.append("// Generated file ").append(fileNo).append("\n\n");
+        sb.append("public class Generated").append(fileNo).append(" {\n");
+        sb.append("    private int[] data = new int[16];\n\n");
+        while (sb.length() < FILE_BYTES) {
+            sb.append(pick(javaPool, this::javaMethod)).append("\n");
+        }
+        sb.append("}\n");
+        return sb.toString();
+    }
+
+    // One Python module of about FILE_BYTES
+    String pythonFile(int fileNo) {
+        StringBuilder sb = new StringBuilder(FILE_BYTES + 1024);
+        sb.append("# Generated file ").append(fileNo).append("\n\nimport math\n\n");
+        while (sb.length() < FILE_BYTES) {
+            sb.append(pick(pythonPool, this::pythonFunction)).append("\n");
+        }
+        return sb.toString();
+    }
+
+    // Either copy a previously generated snippet (with probability dupRatio) or make a new one
+    private String pick(List<String> pool, java.util.function.Supplier<String> fresh) {
+        if (!pool.isEmpty() && rnd.nextDouble() < dupRatio) {
+            return pool.get(rnd.nextInt(pool.size()));
+        }
+        String s = fresh.get();
+        if (pool.size() < POOL_SIZE) pool.add(s);
+        else pool.set(rnd.nextInt(POOL_SIZE), s);
+        return s;
+    }
+
+    private String javaMethod() {
+        String name = word() + (counter++);
+        String var = word();
+        StringBuilder sb = new StringBuilder();
+        sb.append("    // Computes ").append(var).append("\n");
+        sb.append("    public int ").append(name).append("(int ").append(var).append(") {\n");
+        sb.append("        int result = 0;\n");
+        int stmts = 2 + rnd.nextInt(6);
+        for (int i = 0; i < stmts; i++) {
+            switch (rnd.nextInt(4)) {
+                case 0:
+                    sb.append("        for (int i = 0; i < ").append(var).append("; i++) {\n");
+                    sb.append("            result += data[i % data.length] * ").append(rnd.nextInt(100)).append(";\n");
+                    sb.append("        }\n");
+                    break;
+                case 1:
+                    sb.append("        if (").append(var).append(" > ").append(rnd.nextInt(50)).append(") {\n");
+                    sb.append("            System.out.println(\"").append(message()).append(" {\" + ").append(var).append(");\n");
+                    sb.append("        } else {\n");
+                    sb.append("            result -= ").append(rnd.nextInt(10)).append(";\n");
+                    sb.append("        }\n");
+                    break;
+                case 2:
+                    sb.append("        while (result < ").append(rnd.nextInt(1000)).append(") {\n");
+                    sb.append("            result += ").append(var).append(" + 1; /* grow */\n");
+                    sb.append("        }\n");
+                    break;
+                default:
+                    sb.append("        result = result * 31 + \"").append(message()).append("\".length();\n");
+            }
+        }
+        sb.append("        return result;\n");
+        sb.append("    }\n");
+        return sb.toString();
+    }
+
+    private String pythonFunction() {
+        String name = word() + "_" + (counter++);
+        String var = word();
+        StringBuilder sb = new StringBuilder();
+        sb.append("def ").append(name).append("(").append(var).append("):\n");
+        sb.append("    result = 0\n");
+        int stmts = 2 + rnd.nextInt(6);
+        for (int i = 0; i < stmts; i++) {
+            switch (rnd.nextInt(4)) {
+                case 0:
+                    sb.append("    for i in range(").append(var).append("):\n");
+                    sb.append("        result += i * ").append(rnd.nextInt(100)).append("\n");
+                    break;
+                case 1:
+                    sb.append("    if ").append(var).append(" > ").append(rnd.nextInt(50)).append(":\n");
+                    sb.append("        print(f\"").append(message()).append(" {").append(var).append("}\")  # note\n");
+                    sb.append("    else:\n");
+                    sb.append("        result -= ").append(rnd.nextInt(10)).append("\n");
+                    break;
+                case 2:
+                    sb.append("    while result < ").append(rnd.nextInt(1000)).append(":\n");
+                    sb.append("        result += ").append(var).append(" + 1\n");
+                    break;
+                default:
+                    sb.append("    result = result * 31 + len(\"\"\"").append(message()).append("\"\"\")\n");
+            }
+        }
+        sb.append("    return result\n");
+        return sb.toString();
+    }
+
+    private String word() {
+        return WORDS[rnd.nextInt(WORDS.length)];
+    }
+
+    private String message() {
+        return MESSAGES[rnd.nextInt(MESSAGES.length)];
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.out.println("Usage: java CorpusGenerator <out_dir> <size_mb> [dup_ratio=0.2] [seed=42] [java|python|both]");
+            return;
+        }
+        Path out = Paths.get(args[0]);
+        long bytes = (long) (Double.parseDouble(args[1]) * 1024 * 1024);
+        double dup = args.length > 2 ? Double.parseDouble(args[2]) : 0.2;
+        long seed = args.length > 3 ? Long.parseLong(args[3]) : 42;
+        String langs = args.length > 4 ? args[4] : "both";
+        CorpusGenerator gen = new CorpusGenerator(seed, dup);
+        List<Path> files = gen.generate(out, bytes, !langs.equals("python"), !langs.equals("java"));
+        System.out.printf("Generated %d files (%.1f MB, dup ratio %.2f, seed %d) in %s\n",
+                files.size(), bytes / (1024.0 * 1024.0), dup, seed, out);
+    }
+}
@@ -0,0 +1,215 @@
+// Daemon.java
+// Long-running duplicate detection service with a warm JIT and an in-memory DuplicateIndex.
+// Requests are single lines, read from stdin or from clients of a Unix-domain socket:
+//   SCAN <dir or file>    index (or re-index) every supported file under the path
+//   QUERY <file>          which indexed blocks duplicate the blocks of this file?
+//                         (one "DUP" line per duplicate, at most --max-matches per block,
+//                          then a "MORE" line with the number left out)
+//   REMOVE <file>         drop a file from the index
+//   STATS                 number of indexed files, blocks and duplicate groups
+//   QUIT                  end this session (stdin: stop the daemon)
+//   SHUTDOWN              stop the daemon
+// Every reply ends with a line starting with "OK" or "ERR". Standard output carries only
+// replies: everything else the process prints (diagnostics of the extractors, scanner and
+// index) goes to standard error.
+// Usage: java Daemon [--socket <path>] [--scan <dir>]... [--index <file>] [--threads <n>]
+//                    [--max-matches <n, default 20>]
+// Place this file in the java/ directory.
+
+import java.io.*;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+
+public class Daemon {
+    private final DuplicateIndex index = new DuplicateIndex();
+    private final DirectoryScanner scanner;
+    private final FingerprintIndex fingerprints; // Optional persistent index (null if not used)
+    private final Path fingerprintsPath;
+    private final int maxMatches;
+    private volatile boolean running = true;
+    private ServerSocketChannel server;
+
+    public Daemon(int threads, Path fingerprintsPath, int maxMatches) {
+        this.maxMatches = maxMatches;
+        this.scanner = new DirectoryScanner(new ArrayList<>(), new ArrayList<>(), threads, 64);
+        this.fingerprintsPath = fingerprintsPath;
+        this.fingerprints = fingerprintsPath != null ? FingerprintIndex.load(fingerprintsPath) : null;
+        scanner.setIndex(fingerprints);
+    }
+
+    // Index every supported file under a path; returns the number of files indexed
+    public int scan(Path root) throws IOException {
+        List<Path> files = scanner.listFiles(Collections.singletonList(root));
+        List<List<CodeBlock>> perFile = scanner.extractEach(files);
+        for (int i = 0; i < files.size(); i++) index.put(files.get(i), perFile.get(i));
+        return files.size();
+    }
+
+    // Handle one request line. Returns false when the session should end.
+    public boolean handle(String line, PrintWriter out) {
+        line = line.trim();
+        if (line.isEmpty()) return true;
+        int sp = line.indexOf(' ');
+        String cmd = (sp < 0 ? line : line.substring(0, sp)).toUpperCase();
+        String arg = sp < 0 ? "" : line.substring(sp + 1).trim();
+        long t0 = System.nanoTime();
+        try {
+            switch (cmd) {
+                case "SCAN": {
+                    if (arg.isEmpty()) return reply(out, "ERR usage: SCAN <path>");
+                    int files = scan(Paths.get(arg));
+                    return reply(out, String.format("OK scanned %d files in %.1f ms (%d files, %d blocks indexed)",
+                            files, millis(t0), index.fileCount(), index.blockCount()));
+                }
+                case "QUERY": {
+                    if (arg.isEmpty()) return reply(out, "ERR usage: QUERY <file>");
+                    Path file = Paths.get(arg);
+                    if (!Files.isRegularFile(file)) return reply(out, "ERR not a file: " + arg);
+                    List<CodeBlock> blocks = Main.extractBlocks(file.toString());
+                    DuplicateDetection.fingerprintAll(blocks); // Outside the index lock
+                    List<DuplicateIndex.Match> matches = index.query(file, blocks, maxMatches);
+                    // Built by hand: formatting thousands of lines with printf costs more than the query
+                    StringBuilder sb = new StringBuilder(matches.size() * 64);
+                    for (DuplicateIndex.Match m : matches) {
+                        for (DuplicateIndex.IndexedBlock other : m.duplicates) {
+                            sb.append("DUP ").append(m.block.name).append(' ').append(m.block.startLine).append('-').append(m.block.endLine)
+                              .append(" = ").append(other.path).append(' ').append(other.name)
+                              .append(' ').append(other.startLine).append('-').append(other.endLine).append('\n');
+                        }
+                        if (m.total > m.duplicates.size()) {
+                            sb.append("MORE ").append(m.block.name).append(' ').append(m.block.startLine).append('-')
+                              .append(m.block.endLine).append(' ').append(m.total - m.duplicates.size()).append('\n');
+                        }
+                    }
+                    out.print(sb);
+                    return reply(out, String.format("OK %d of %d blocks duplicated in %.1f ms",
+                            matches.size(), blocks.size(), millis(t0)));
+                }
+                case "REMOVE":
+                    if (arg.isEmpty()) return reply(out, "ERR usage: REMOVE <file>");
+                    return reply(out, index.remove(Paths.get(arg)) != null ? "OK removed" : "ERR not indexed: " + arg);
+                case "STATS":
+                    return reply(out, String.format("OK files=%d blocks=%d groups=%d",
+                            index.fileCount(), index.blockCount(), index.groupCount()));
+                case "QUIT":
+                    reply(out, "OK bye");
+                    return false;
+                case "SHUTDOWN":
+                    reply(out, "OK shutting down");
+                    shutdown();
+                    return false;
+                default:
+                    return reply(out, "ERR unknown command: " + cmd);
+            }
+        } catch (IOException | RuntimeException e) {
+            return reply(out, "ERR " + e);
+        }
+    }
+
+    // Serve requests from stdin until QUIT, SHUTDOWN or end of input; replies go to the given stream
+    public void serveStdin(OutputStream replies) throws IOException {
+        BufferedReader in = new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8));
+        PrintWriter out = new PrintWriter(new OutputStreamWriter(replies, StandardCharsets.UTF_8));
+        String line;
+        while (running && (line = in.readLine()) != null) {
+            if (!handle(line, out)) break;
+        }
+        shutdown();
+    }
+
+    // Serve requests on a Unix-domain socket until SHUTDOWN; each client gets its own thread
+    public void serveSocket(Path socketPath) throws IOException {
+        Files.deleteIfExists(socketPath);
+        server = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+        server.bind(UnixDomainSocketAddress.of(socketPath));
+        System.out.println("Daemon listening on " + socketPath);
+        try {
+            while (running) {
+                SocketChannel client;
+                try {
+                    client = server.accept();
+                } catch (ClosedChannelException e) {
+                    break; // SHUTDOWN closed the server
+                }
+                Thread t = new Thread(() -> serveClient(client), "daemon-client");
+                t.setDaemon(true);
+                t.start();
+            }
+        } finally {
+            Files.deleteIfExists(socketPath);
+        }
+    }
+
+    private void serveClient(SocketChannel client) {
+        try (SocketChannel ch = client;
+             BufferedReader in = new BufferedReader(Channels.newReader(ch, StandardCharsets.UTF_8));
+             PrintWriter out = new PrintWriter(Channels.newWriter(ch, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                if (!handle(line, out)) break;
+            }
+        } catch (IOException e) {
+            System.out.println("Client error: " + e.getMessage());
+        }
+    }
+
+    private synchronized void shutdown() {
+        if (!running) return;
+        running = false;
+        if (fingerprints != null) {
+            try {
+                fingerprints.save(fingerprintsPath);
+            } catch (IOException e) {
+                System.out.println("Cannot save index: " + e.getMessage());
+            }
+        }
+        if (server != null) {
+            try {
+                server.close();
+            } catch (IOException e) {
+                // Already closed
+            }
+        }
+    }
+
+    private static boolean reply(PrintWriter out, String status) {
+        out.println(status);
+        out.flush();
+        return true;
+    }
+
+    private static double millis(long t0) {
+        return (System.nanoTime() - t0) / 1e6;
+    }
+
+    public static void main(String[] args) throws IOException {
+        // Keep stdout for protocol replies; diagnostics printed anywhere else go to stderr
+        PrintStream replies = System.out;
+        System.setOut(System.err);
+        Path socket = null;
+        Path indexPath = null;
+        int threads = 0;
+        int maxMatches = 20;
+        List<Path> roots = new ArrayList<>();
+        for (int a = 0; a < args.length; a++) {
+            switch (args[a]) {
+                case "--socket": socket = Paths.get(args[++a]); break;
+                case "--scan": roots.add(Paths.get(args[++a])); break;
+                case "--index": indexPath = Paths.get(args[++a]); break;
+                case "--threads": threads = Integer.parseInt(args[++a]); break;
+                case "--max-matches": maxMatches = Integer.parseInt(args[++a]); break;
+                default:
+                    System.out.println("Unknown argument: " + args[a]);
+                    return;
+            }
+        }
+        Daemon daemon = new Daemon(threads, indexPath, maxMatches);
+        for (Path root : roots) daemon.scan(root);
+        if (socket != null) daemon.serveSocket(socket);
+        else daemon.serveStdin(replies);
+    }
+}
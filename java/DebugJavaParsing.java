@@ -22,7 +22,7 @@ public class DebugJavaParsing {
             // Type is not a field in CodeBlock, so we print the name as a proxy
             System.out.printf("Type: %s\n", block.name);
             System.out.println("Code preview:");
-            String[] lines = block.code.split("\n");
+            String[] lines = block.code().split("\n");
             for (int j = 0; j < Math.min(3, lines.length); j++) {
                 System.out.printf("  %d: %s\n", j + 1, lines[j]);
             }
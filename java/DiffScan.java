@@ -0,0 +1,269 @@
+// DiffScan.java
+// Diff-scoped duplicate check for pull requests: only the blocks that a git diff touches
+// are extracted and looked up in a baseline ShardIndex (see Main --shard-index).
+// Changed lines come from "git diff -U0"; a Python block (line-based extractor) or Java
+// block (JavaParser) is checked if its line range overlaps a changed hunk. A block is a
+// new clone if its fingerprint is found in the baseline or among the other changed
+// blocks, unless its file had as many copies in the baseline as it has now (a pre-existing
+// clone); when a file gained copies, changed blocks at line ranges the baseline did not
+// have are reported first. Paths are compared relative to the repository root, as the
+// shard stores them (see Main --shard-root). Blocks are fingerprinted with the default
+// options, so the baseline must be written without --java-* options and --python-ast.
+// The cost depends on the size of the diff, not on the size of the repository.
+// The new side of the diff is read from the working tree, so the range should end at
+// the checked-out commit (e.g. origin/main...HEAD), or be a single commit to compare
+// uncommitted changes against. With --file, every block of the given files is checked
+// instead of a diff (no git needed; for editors and pre-commit hooks), and --repo must be
+// the root the baseline's paths are relative to.
+// With --bloom, a Bloom filter of the baseline (see BloomFilter) answers most lookups;
+// only the shard's header and fence table are read up front, to check that the filter was
+// built from it, and records are only read once a fingerprint passes the filter.
+// Usage: java DiffScan --baseline <shard file> [--bloom <filter file>]
+//                      [--range <git range, default HEAD>] [--repo <dir>] [--file <path>]...
+// Exits with status 1 if new clones were found.
+// Place this file in the java/ directory.
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+
+public class DiffScan {
+    // A changed block and the blocks it duplicates
+    static class NewClone {
+        final ShardIndex.Record block;
+        final List<ShardIndex.Record> matches = new ArrayList<>();
+
+        NewClone(ShardIndex.Record block) {
+            this.block = block;
+        }
+    }
+
+    private final Path repo;
+    private Path root;          // Directory the baseline's paths are relative to
+    private BloomFilter filter; // Optional: fingerprints it rules out are not looked up
+    // Blocks per fingerprint, language and path in the changed files, whether changed or not
+    private final Map<String, Integer> copies = new HashMap<>();
+    int lookups;                // Fingerprints looked up in the baseline shard
+
+    public DiffScan(Path repo) {
+        this.repo = repo;
+        this.root = repo.toAbsolutePath().normalize();
+    }
+
+    // Check fingerprints against a Bloom filter of the baseline before reading the shard
+    public void setFilter(BloomFilter filter) {
+        this.filter = filter;
+    }
+
+    // Changed line ranges {first, last} (new side) per file, from git diff -U0
+    public Map<Path, List<int[]>> changedLines(String range) throws IOException, InterruptedException {
+        Path top = Paths.get(git("rev-parse", "--show-toplevel").trim()).toAbsolutePath().normalize();
+        root = top;
+        String diff = git("diff", "-U0", "--no-color", "--no-ext-diff", "--src-prefix=a/", "--dst-prefix=b/", range);
+        Map<Path, List<int[]>> changed = new LinkedHashMap<>();
+        List<int[]> current = null;
+        for (String line : diff.split("\n")) {
+            if (line.startsWith("+++ ")) {
+                String name = line.substring(4);
+                current = null;
+                if (name.startsWith("b/") && DirectoryScanner.isSupported(Paths.get(name))) {
+                    current = new ArrayList<>();
+                    changed.put(top.resolve(name.substring(2)).normalize(), current);
+                }
+            } else if (line.startsWith("@@ ") && current != null) {
+                // @@ -a[,b] +c[,d] @@ : d lines starting at c on the new side (d = 0 for pure deletions)
+                int plus = line.indexOf('+');
+                int end = line.indexOf(' ', plus);
+                String[] parts = line.substring(plus + 1, end).split(",");
+                int first = Integer.parseInt(parts[0]);
+                int count = parts.length > 1 ? Integer.parseInt(parts[1]) : 1;
+                if (count > 0) current.add(new int[] {first, first + count - 1});
+            }
+        }
+        return changed;
+    }
+
+    // Blocks of the changed files whose line ranges overlap a hunk, fingerprinted like the shard writer does
+    public List<ShardIndex.Record> changedBlocks(Map<Path, List<int[]>> changed) throws IOException {
+        List<ShardIndex.Record> blocks = new ArrayList<>();
+        for (Map.Entry<Path, List<int[]>> e : changed.entrySet()) {
+            Path file = e.getKey();
+            if (!Files.isRegularFile(file) || e.getValue().isEmpty()) continue;
+            String path = ShardIndex.relativePath(root, file);
+            List<ShardIndex.Record> all = new ArrayList<>();
+            if (file.toString().endsWith(".py")) {
+                for (CodeBlock b : PythonBlocks.extractPythonBlocks(file.toString())) {
+                    all.add(new ShardIndex.Record(DuplicateDetection.fingerprintOf(b), "python", "block", b.name,
+                            path, b.startLine, b.endLine));
+                }
+            } else {
+                for (JavaParserDuplicateDetection.Block b : JavaParserDuplicateDetection.extractBlocks(file)) {
+                    all.add(new ShardIndex.Record(b.fingerprint, "java", b.type, b.name, path, b.startLine, b.endLine));
+                }
+            }
+            for (ShardIndex.Record r : all) {
+                copies.merge(key(r) + " " + path, 1, Integer::sum);
+                if (overlaps(e.getValue(), r.startLine, r.endLine)) blocks.add(r);
+            }
+        }
+        return blocks;
+    }
+
+    // Changed blocks that duplicate a baseline block or another changed block.
+    // Without a filter, the baseline shard is opened at the first fingerprint that has to be looked up.
+    public List<NewClone> findNewClones(List<ShardIndex.Record> blocks, Path baselinePath) throws IOException {
+        ShardIndex.Lookup baseline = null;
+        try {
+            if (filter != null) baseline = openBaseline(baselinePath);
+            Map<String, List<ShardIndex.Record>> byKey = new LinkedHashMap<>();
+            for (ShardIndex.Record b : blocks) byKey.computeIfAbsent(key(b), k -> new ArrayList<>()).add(b);
+            List<NewClone> clones = new ArrayList<>();
+            for (List<ShardIndex.Record> same : byKey.values()) {
+                ShardIndex.Record first = same.get(0);
+                List<ShardIndex.Record> found = new ArrayList<>();
+                if (filter == null || filter.mightContain(first.fingerprint)) {
+                    if (baseline == null) baseline = openBaseline(baselinePath);
+                    lookups++;
+                    for (ShardIndex.Record r : baseline.find(first.fingerprint)) {
+                        if (r.language.equals(first.language)) found.add(r);
+                    }
+                }
+                Map<String, List<ShardIndex.Record>> byFile = new LinkedHashMap<>();
+                for (ShardIndex.Record b : same) byFile.computeIfAbsent(b.path, k -> new ArrayList<>()).add(b);
+                for (Map.Entry<String, List<ShardIndex.Record>> e : byFile.entrySet()) {
+                    // Copies the file gained since the baseline; changed blocks at new line ranges come first
+                    int baselineCopies = 0;
+                    List<ShardIndex.Record> candidates = new ArrayList<>();
+                    List<ShardIndex.Record> atBaselineRange = new ArrayList<>();
+                    for (ShardIndex.Record r : found) {
+                        if (r.path.equals(e.getKey())) baselineCopies++;
+                    }
+                    for (ShardIndex.Record b : e.getValue()) {
+                        (inBaseline(found, b) ? atBaselineRange : candidates).add(b);
+                    }
+                    candidates.addAll(atBaselineRange);
+                    int current = Math.max(copies.getOrDefault(key(first) + " " + e.getKey(), 0), e.getValue().size());
+                    int added = Math.min(current - baselineCopies, candidates.size());
+                    for (int i = 0; i < added; i++) {
+                        ShardIndex.Record b = candidates.get(i);
+                        NewClone clone = new NewClone(b);
+                        clone.matches.addAll(found);
+                        for (ShardIndex.Record other : same) {
+                            if (other != b) clone.matches.add(other);
+                        }
+                        if (!clone.matches.isEmpty()) clones.add(clone);
+                    }
+                }
+            }
+            return clones;
+        } finally {
+            if (baseline != null) baseline.close();
+        }
+    }
+
+    // Changed Java blocks are extracted with the default options, so the baseline must use them
+    // too; a Bloom filter must have been built from this very shard
+    private ShardIndex.Lookup openBaseline(Path path) throws IOException {
+        ShardIndex.Lookup baseline = new ShardIndex.Lookup(path);
+        if (filter != null && !ShardIndex.identity(Collections.singletonList(baseline)).equals(filter.shards)) {
+            baseline.close();
+            throw new IOException("The Bloom filter was not built from " + path + "; rebuild it with BloomFilter build");
+        }
+        if (!baseline.javaOptions.equals(JavaParserDuplicateDetection.Options.DEFAULT)) {
+            baseline.close();
+            throw new IOException(path + " was written with JavaParser options \"" + baseline.javaOptions
+                    + "\"; DiffScan needs a baseline written with the defaults");
+        }
+        if (!baseline.pythonOptions.equals(PythonAst.Options.DEFAULT)) {
+            baseline.close();
+            throw new IOException(path + " was written with Python options \"" + baseline.pythonOptions
+                    + "\"; DiffScan fingerprints Python blocks by their normalized text");
+        }
+        return baseline;
+    }
+
+    private static boolean overlaps(List<int[]> hunks, int start, int end) {
+        for (int[] h : hunks) {
+            if (h[0] <= end && h[1] >= start) return true;
+        }
+        return false;
+    }
+
+    private static String key(ShardIndex.Record r) {
+        return r.language + ":" + r.fingerprint.toHex();
+    }
+
+    // Whether the baseline has a block at the same path and line range
+    private static boolean inBaseline(List<ShardIndex.Record> found, ShardIndex.Record b) {
+        for (ShardIndex.Record r : found) {
+            if (r.path.equals(b.path) && r.startLine == b.startLine && r.endLine == b.endLine) return true;
+        }
+        return false;
+    }
+
+    // Run git in the repository and return its standard output
+    private String git(String... args) throws IOException, InterruptedException {
+        List<String> command = new ArrayList<>();
+        command.add("git");
+        command.addAll(Arrays.asList(args));
+        Process process = new ProcessBuilder(command).directory(repo.toFile())
+                .redirectError(ProcessBuilder.Redirect.INHERIT).start();
+        String out;
+        try (InputStream in = process.getInputStream()) {
+            out = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+        if (process.waitFor() != 0) throw new IOException("git " + String.join(" ", args) + " failed");
+        return out;
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        Path baselinePath = null;
+        Path bloomPath = null;
+        String range = "HEAD";
+        Path repo = Paths.get(".");
+        List<Path> files = new ArrayList<>();
+        for (int a = 0; a < args.length; a++) {
+            switch (args[a]) {
+                case "--baseline": baselinePath = Paths.get(args[++a]); break;
+                case "--bloom": bloomPath = Paths.get(args[++a]); break;
+                case "--file": files.add(Paths.get(args[++a]).toAbsolutePath().normalize()); break;
+                case "--range": range = args[++a]; break;
+                case "--repo": repo = Paths.get(args[++a]); break;
+                default:
+                    System.out.println("Unknown argument: " + args[a]);
+                    return;
+            }
+        }
+        if (baselinePath == null) {
+            System.out.println("Usage: java DiffScan --baseline <shard file> [--bloom <filter file>]");
+            System.out.println("                     [--range <git range>] [--repo <dir>] [--file <path>]...");
+            return;
+        }
+        long t0 = System.nanoTime();
+        DiffScan scan = new DiffScan(repo);
+        if (bloomPath != null) scan.setFilter(BloomFilter.open(bloomPath));
+        Map<Path, List<int[]>> changed;
+        if (files.isEmpty()) {
+            changed = scan.changedLines(range);
+        } else {
+            // Whole files: one hunk covering every line
+            changed = new LinkedHashMap<>();
+            for (Path f : files) changed.put(f, Collections.singletonList(new int[] {1, Integer.MAX_VALUE}));
+        }
+        List<ShardIndex.Record> blocks = scan.changedBlocks(changed);
+        List<NewClone> clones = scan.findNewClones(blocks, baselinePath);
+        for (NewClone clone : clones) {
+            ShardIndex.Record b = clone.block;
+            System.out.printf("New duplicate: %s %s %s (%d-%d)\n", b.language, b.type, b.name, b.startLine, b.endLine);
+            System.out.println("  in " + b.path);
+            for (ShardIndex.Record m : clone.matches) {
+                System.out.printf("  -> %s %s [%d-%d] %s\n", m.type, m.name, m.startLine, m.endLine, m.path);
+            }
+            System.out.println("------");
+        }
+        System.out.printf("[Diff] %d changed files, %d changed blocks, %d baseline lookups, %d new duplicates in %.1f ms\n",
+                changed.size(), blocks.size(), scan.lookups, clones.size(), (System.nanoTime() - t0) / 1e6);
+        if (!clones.isEmpty()) System.exit(1);
+    }
+}
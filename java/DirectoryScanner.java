@@ -0,0 +1,197 @@
+// DirectoryScanner.java
+// Walks directory trees and extracts code blocks from every matching file in parallel.
+// Extraction and normalization run on a work-stealing ForkJoinPool; a semaphore caps
+// the number of files open at once.
+// Place this file in the java/ directory.
+
+import java.io.*;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+import java.util.concurrent.*;
+
+public class DirectoryScanner {
+    // Files per leaf task before a task stops splitting
+    private static final int LEAF_SIZE = 8;
+
+    private final List<PathMatcher> includes = new ArrayList<>();
+    private final List<PathMatcher> excludes = new ArrayList<>();
+    private final int parallelism;
+    private final Semaphore openFiles;
+    private FingerprintIndex index; // Optional: unchanged files are served from here
+    private ContentCache cache;     // Optional: files identical to one already extracted are served from here
+
+    public DirectoryScanner(List<String> includeGlobs, List<String> excludeGlobs, int parallelism, int maxOpenFiles) {
+        FileSystem fs = FileSystems.getDefault();
+        for (String g : includeGlobs) includes.add(fs.getPathMatcher("glob:" + g));
+        for (String g : excludeGlobs) excludes.add(fs.getPathMatcher("glob:" + g));
+        this.parallelism = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+        this.openFiles = new Semaphore(maxOpenFiles > 0 ? maxOpenFiles : 64);
+    }
+
+    // Use a persistent fingerprint index so unchanged files are not re-extracted
+    public void setIndex(FingerprintIndex index) {
+        this.index = index;
+    }
+
+    // Reuse the blocks of byte-identical files within this run (the index, if set, is asked first)
+    public void setContentCache(ContentCache cache) {
+        this.cache = cache;
+    }
+
+    // Collect all supported files under the given roots, honoring include/exclude globs
+    public List<Path> listFiles(List<Path> roots) throws IOException {
+        List<Path> files = new ArrayList<>();
+        for (Path root : roots) {
+            if (Files.isRegularFile(root)) {
+                if (isSupported(root)) files.add(root);
+                continue;
+            }
+            Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                    if (!dir.equals(root) && matchesAny(excludes, root.relativize(dir), dir)) {
+                        return FileVisitResult.SKIP_SUBTREE;
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                    if (attrs.isRegularFile() && accepts(root, file)) files.add(file);
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(Path file, IOException e) {
+                    System.out.println("Cannot read: " + file + " (" + e.getMessage() + ")");
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        }
+        Collections.sort(files); // Deterministic order regardless of file system
+        return files;
+    }
+
+    // Collect the root directories and every directory under them that is not excluded
+    public List<Path> listDirectories(List<Path> roots) throws IOException {
+        List<Path> dirs = new ArrayList<>();
+        for (Path root : roots) {
+            if (!Files.isDirectory(root)) continue;
+            Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                    if (!dir.equals(root) && matchesAny(excludes, root.relativize(dir), dir)) {
+                        return FileVisitResult.SKIP_SUBTREE;
+                    }
+                    dirs.add(dir);
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(Path file, IOException e) {
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        }
+        return dirs;
+    }
+
+    // Whether a file under root is supported and passes the include/exclude globs
+    public boolean accepts(Path root, Path file) {
+        Path rel = root.relativize(file);
+        if (!isSupported(file) || matchesAny(excludes, rel, file)) return false;
+        return includes.isEmpty() || matchesAny(includes, rel, file);
+    }
+
+    // Extract (and fingerprint) blocks from all files in parallel.
+    // Results are merged in file order, so output does not depend on scheduling.
+    public List<CodeBlock> extractAll(List<Path> files) {
+        List<CodeBlock> all = new ArrayList<>();
+        for (List<CodeBlock> blocks : extractEach(files)) all.addAll(blocks);
+        return all;
+    }
+
+    // Extract (and fingerprint) blocks from all files in parallel, one list per file (same order as files)
+    public List<List<CodeBlock>> extractEach(List<Path> files) {
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            List<List<CodeBlock>> perFile = new ArrayList<>(Collections.nCopies(files.size(), null));
+            pool.invoke(new ExtractTask(files, perFile, 0, files.size()));
+            return perFile;
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    // Convenience: list and extract in one call
+    public List<CodeBlock> scan(List<Path> roots) throws IOException {
+        return extractAll(listFiles(roots));
+    }
+
+    // Extract blocks from a single file, holding an open-file permit while reading
+    private List<CodeBlock> extractFile(Path file) {
+        try {
+            openFiles.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return Collections.emptyList();
+        }
+        List<CodeBlock> blocks;
+        try {
+            // The index falls through to the content cache on a miss
+            blocks = index != null ? index.extractBlocks(file)
+                    : cache != null ? cache.extractBlocks(file)
+                    : Main.extractBlocks(file.toString());
+        } catch (IOException e) {
+            System.out.println("Cannot read: " + file + " (" + e.getMessage() + ")");
+            return Collections.emptyList();
+        } finally {
+            openFiles.release();
+        }
+        // Normalize outside the permit: no file handle is needed any more
+        DuplicateDetection.fingerprintAll(blocks);
+        return blocks;
+    }
+
+    // Splits the file range in halves until it is small enough to process directly
+    private class ExtractTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final List<Path> files;
+        private final List<List<CodeBlock>> out;
+        private final int from;
+        private final int to;
+
+        ExtractTask(List<Path> files, List<List<CodeBlock>> out, int from, int to) {
+            this.files = files;
+            this.out = out;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= LEAF_SIZE) {
+                for (int i = from; i < to; i++) out.set(i, extractFile(files.get(i)));
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new ExtractTask(files, out, from, mid), new ExtractTask(files, out, mid, to));
+        }
+    }
+
+    static boolean isSupported(Path file) {
+        String name = file.getFileName().toString();
+        return name.endsWith(".java") || name.endsWith(".py");
+    }
+
+    // A glob matches if it matches the path relative to the scan root or the bare file name
+    private static boolean matchesAny(List<PathMatcher> matchers, Path rel, Path abs) {
+        Path name = abs.getFileName();
+        for (PathMatcher m : matchers) {
+            if (m.matches(rel) || (name != null && m.matches(name))) return true;
+        }
+        return false;
+    }
+}
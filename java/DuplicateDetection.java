@@ -3,58 +3,98 @@
 // Detects duplicate code blocks between Java and Python files.
 // Place this file in the java/ directory.
 
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.*;
 
 public class DuplicateDetection {
-    // Normalize code by removing comments, whitespace, and lowercasing
+    // Normalize code by removing comments, whitespace, and lowercasing.
+    // The language is unknown here, so both // and # comments are stripped.
     public static String normalizeCode(String code) {
-        // Remove single-line comments (// and #)
-        code = code.replaceAll("//.*", "");
-        code = code.replaceAll("#.*", "");
-        // Remove multi-line comments (/* ... */)
-        code = code.replaceAll("(?s)/\\*.*?\\*/", "");
-        // Remove all whitespace (spaces, tabs, newlines)
-        code = code.replaceAll("\\s+", "");
-        // Lowercase
-        code = code.toLowerCase();
-        return code;
+        return CodeNormalizer.normalize(code, CodeNormalizer.Language.GENERIC, true);
     }
 
-    // Mark duplicates among code blocks and group them
+    // Normalize code using the comment and string rules of the given language ("java" or "python")
+    public static String normalizeCode(String code, String language) {
+        return CodeNormalizer.normalize(code, CodeNormalizer.Language.of(language), true);
+    }
+
+    // Returns the fingerprint of a block's normalized body, computing it at most once
+    static Fingerprint fingerprintOf(CodeBlock block) {
+        if (block.fingerprint == null) {
+            block.fingerprint = CodeNormalizer.fingerprint(block.codeView(), CodeNormalizer.Language.of(block.language), true);
+        }
+        return block.fingerprint;
+    }
+
+    // Fingerprints every block of a batch that has none yet. Normalization time and bytes
+    // are added up over the batch and published once, not per block.
+    static void fingerprintAll(List<CodeBlock> blocks) {
+        long t0 = System.nanoTime();
+        long bytes = 0;
+        for (CodeBlock block : blocks) {
+            if (block.fingerprint != null) continue;
+            fingerprintOf(block);
+            bytes += block.codeView().length();
+        }
+        if (bytes > 0) {
+            Metrics.count("normalize_nanos", System.nanoTime() - t0);
+            Metrics.count("normalize_bytes", bytes);
+        }
+    }
+
+    // Mark duplicates among code blocks and group them.
+    // Each block is fingerprinted once and bucketed in a hash map, so grouping
+    // runs in expected linear time. Groups are keyed by the fingerprint's hex form.
     public static Map<String, List<CodeBlock>> markDuplicates(List<CodeBlock> blocks) {
-        Map<String, List<CodeBlock>> duplicatesGroups = new HashMap<>();
-        List<String> normalizedBodies = new ArrayList<>();
-        List<CodeBlock> allBlocks = new ArrayList<>(blocks);
-
-        // Build normalized body_only list
-        for (CodeBlock block : allBlocks) {
-            String codeToNormalize;
-            try {
-                codeToNormalize = (String) block.getClass().getField("body_only").get(block);
-                if (codeToNormalize == null || codeToNormalize.trim().isEmpty()) codeToNormalize = block.code;
-            } catch (Exception e) {
-                codeToNormalize = block.code;
-            }
-            String normalized = normalizeCode(codeToNormalize);
-            normalizedBodies.add(normalized);
+        Map<Fingerprint, List<CodeBlock>> buckets = new LinkedHashMap<>();
+        Set<CodeBlock> seen = new HashSet<>();
+        fingerprintAll(blocks);
+
+        // Single pass: drop each block into the bucket of its fingerprint
+        for (CodeBlock block : blocks) {
+            if (!seen.add(block)) continue; // Never add the same block twice
+            buckets.computeIfAbsent(fingerprintOf(block), k -> new ArrayList<>(2)).add(block);
+        }
+
+        // Keep only buckets with more than one block
+        Map<String, List<CodeBlock>> duplicatesGroups = new LinkedHashMap<>();
+        for (Map.Entry<Fingerprint, List<CodeBlock>> e : buckets.entrySet()) {
+            List<CodeBlock> group = e.getValue();
+            if (group.size() < 2) continue;
+            for (CodeBlock block : group) block.isDuplicate = true;
+            duplicatesGroups.put(e.getKey().toHex(), group);
+        }
+        return duplicatesGroups;
+    }
+
+    // Same grouping with bounded memory: (fingerprint, position) records are spilled to
+    // partition files under spillDir once they exceed memoryLimit bytes (see SpillingGrouper).
+    // The result is identical to markDuplicates(blocks).
+    public static Map<String, List<CodeBlock>> markDuplicates(List<CodeBlock> blocks, long memoryLimit, Path spillDir)
+            throws IOException {
+        List<CodeBlock> unique = new ArrayList<>(blocks.size());
+        Set<CodeBlock> seen = new HashSet<>();
+        for (CodeBlock block : blocks) {
+            if (seen.add(block)) unique.add(block);
         }
+        seen = null;
+        fingerprintAll(unique);
 
-        // Brute-force compare all pairs
-        for (int i = 0; i < allBlocks.size(); i++) {
-            for (int j = i + 1; j < allBlocks.size(); j++) {
-                if (normalizedBodies.get(i).equals(normalizedBodies.get(j))) {
-                    allBlocks.get(i).isDuplicate = true;
-                    allBlocks.get(j).isDuplicate = true;
-                    // Add both to the group for this normalized body
-                    String key = normalizedBodies.get(i);
-                    duplicatesGroups.computeIfAbsent(key, k -> new ArrayList<>());
-                    if (!duplicatesGroups.get(key).contains(allBlocks.get(i)))
-                        duplicatesGroups.get(key).add(allBlocks.get(i));
-                    if (!duplicatesGroups.get(key).contains(allBlocks.get(j)))
-                        duplicatesGroups.get(key).add(allBlocks.get(j));
+        Map<String, List<CodeBlock>> duplicatesGroups = new LinkedHashMap<>();
+        try (SpillingGrouper grouper = new SpillingGrouper(memoryLimit, spillDir)) {
+            for (int i = 0; i < unique.size(); i++) grouper.add(fingerprintOf(unique.get(i)), i);
+            for (int[] members : grouper.groups()) {
+                List<CodeBlock> group = new ArrayList<>(members.length);
+                for (int i : members) {
+                    CodeBlock block = unique.get(i);
+                    block.isDuplicate = true;
+                    group.add(block);
                 }
+                duplicatesGroups.put(group.get(0).fingerprint.toHex(), group);
             }
+            Metrics.count("spilled_records", grouper.spilledRecords());
         }
         return duplicatesGroups;
     }
-} 
\ No newline at end of file
+}
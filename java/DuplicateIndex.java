@@ -0,0 +1,226 @@
+// DuplicateIndex.java
+// In-memory index of fingerprinted blocks, by file and by fingerprint.
+// Files are added, replaced and removed one at a time, so a long-running process
+// (see Daemon, Watcher) keeps its duplicate groups current without rescanning everything.
+// Each update touches only the buckets of the file's old and new fingerprints and
+// reports the resulting Delta (groups created / resolved / resized, score changes).
+// Only the location and fingerprint of each block is kept (IndexedBlock), not the block
+// with its source buffer, so a long-running index does not hold the text of every file.
+// All methods are synchronized; extraction happens outside the index.
+// Place this file in the java/ directory.
+
+import java.nio.file.*;
+import java.util.*;
+
+public class DuplicateIndex {
+    // An indexed block: where it is and its fingerprint
+    public static class IndexedBlock {
+        final String path;
+        final String language;
+        final String name;
+        final int startLine;
+        final int endLine;
+        final Fingerprint fingerprint;
+
+        IndexedBlock(CodeBlock block, Path file) {
+            this.path = block.source != null ? block.source.path : file.toString();
+            this.language = block.language;
+            this.name = block.name;
+            this.startLine = block.startLine;
+            this.endLine = block.endLine;
+            this.fingerprint = DuplicateDetection.fingerprintOf(block);
+        }
+    }
+
+    // A block of a queried file and the blocks with the same fingerprint
+    public static class Match {
+        final CodeBlock block;
+        final List<IndexedBlock> duplicates = new ArrayList<>(); // At most the query limit
+        int total;                                                // All duplicates, listed or not
+
+        Match(CodeBlock block) {
+            this.block = block;
+        }
+
+        void add(IndexedBlock other, int limit) {
+            if (duplicates.size() < limit) duplicates.add(other);
+            total++;
+        }
+    }
+
+    // What one update changed
+    public static class Delta {
+        final List<Fingerprint> created = new ArrayList<>();  // Now shared by two or more blocks
+        final List<Fingerprint> resolved = new ArrayList<>(); // No longer duplicated
+        final List<Fingerprint> resized = new ArrayList<>();  // Still duplicated, different number of blocks
+        final Map<String, double[]> scores = new TreeMap<>(); // Language -> {before, after}, changed ones only
+
+        public boolean isEmpty() {
+            return created.isEmpty() && resolved.isEmpty() && resized.isEmpty() && scores.isEmpty();
+        }
+    }
+
+    private final Map<String, List<IndexedBlock>> byFile = new HashMap<>();
+    private final Map<Fingerprint, List<IndexedBlock>> byFingerprint = new HashMap<>();
+    private int blockCount;
+    private int groupCount; // Fingerprints shared by two or more blocks
+    private final Map<String, int[]> languageCounts = new TreeMap<>(); // Language -> {blocks, duplicate blocks}
+
+    // Index (or re-index) a file's blocks, replacing whatever was indexed for it before
+    public synchronized Delta put(Path file, List<CodeBlock> blocks) {
+        List<IndexedBlock> indexed = new ArrayList<>(blocks.size());
+        for (CodeBlock block : blocks) indexed.add(new IndexedBlock(block, file));
+        return update(key(file), indexed);
+    }
+
+    // Drop a file from the index; returns null if it was not indexed
+    public synchronized Delta remove(Path file) {
+        String key = key(file);
+        return byFile.containsKey(key) ? update(key, null) : null;
+    }
+
+    // Blocks currently indexed for a file (empty if none)
+    public synchronized List<IndexedBlock> blocksOf(Path file) {
+        List<IndexedBlock> blocks = byFile.get(key(file));
+        return blocks != null ? new ArrayList<>(blocks) : new ArrayList<>();
+    }
+
+    // Which blocks duplicate the given (freshly extracted) blocks of a file?
+    // The indexed copy of the same file is ignored; duplicates inside the file come from the given blocks.
+    // At most limit duplicates are listed per block; Match.total counts all of them.
+    public synchronized List<Match> query(Path file, List<CodeBlock> blocks, int limit) {
+        // Stale blocks are counted per fingerprint so totals need no walk over large buckets
+        List<IndexedBlock> stale = byFile.getOrDefault(key(file), Collections.emptyList());
+        Set<IndexedBlock> ignored = Collections.newSetFromMap(new IdentityHashMap<>());
+        ignored.addAll(stale);
+        Map<Fingerprint, Integer> staleCount = new HashMap<>();
+        for (IndexedBlock block : stale) staleCount.merge(block.fingerprint, 1, Integer::sum);
+        Map<Fingerprint, List<CodeBlock>> local = new HashMap<>();
+        for (CodeBlock block : blocks) {
+            local.computeIfAbsent(DuplicateDetection.fingerprintOf(block), k -> new ArrayList<>(2)).add(block);
+        }
+        List<Match> matches = new ArrayList<>();
+        for (CodeBlock block : blocks) {
+            Fingerprint fp = block.fingerprint;
+            Match m = new Match(block);
+            for (CodeBlock other : local.get(fp)) {
+                if (other != block) m.add(new IndexedBlock(other, file), limit);
+            }
+            List<IndexedBlock> bucket = byFingerprint.get(fp);
+            if (bucket != null) {
+                // Count the whole bucket, but only walk it as far as needed to list the first few
+                for (int i = 0; i < bucket.size() && m.duplicates.size() < limit; i++) {
+                    if (!ignored.contains(bucket.get(i))) m.duplicates.add(bucket.get(i));
+                }
+                m.total += bucket.size() - staleCount.getOrDefault(fp, 0);
+            }
+            if (m.total > 0) matches.add(m);
+        }
+        return matches;
+    }
+
+    // Paths of all indexed files
+    public synchronized List<Path> files() {
+        List<Path> files = new ArrayList<>();
+        for (String key : byFile.keySet()) files.add(Paths.get(key));
+        return files;
+    }
+
+    // All indexed blocks sharing a fingerprint (empty if none)
+    public synchronized List<IndexedBlock> group(Fingerprint fp) {
+        List<IndexedBlock> bucket = byFingerprint.get(fp);
+        return bucket != null ? new ArrayList<>(bucket) : new ArrayList<>();
+    }
+
+    public synchronized int fileCount() {
+        return byFile.size();
+    }
+
+    public synchronized int blockCount() {
+        return blockCount;
+    }
+
+    public synchronized int groupCount() {
+        return groupCount;
+    }
+
+    // Duplication score per language: duplicate blocks / all blocks
+    public synchronized Map<String, Double> scores() {
+        Map<String, Double> scores = new TreeMap<>();
+        for (Map.Entry<String, int[]> e : languageCounts.entrySet()) {
+            int[] c = e.getValue();
+            scores.put(e.getKey(), c[0] > 0 ? (double) c[1] / c[0] : 0.0);
+        }
+        return scores;
+    }
+
+    // Replace the blocks of one file (null = delete it). Only the buckets of its
+    // old and new fingerprints are touched, so the cost is proportional to the file.
+    private Delta update(String key, List<IndexedBlock> blocks) {
+        Map<String, Double> scoresBefore = scores();
+        Map<Fingerprint, Integer> sizeBefore = new LinkedHashMap<>();
+        List<IndexedBlock> old = byFile.remove(key);
+        if (old != null) {
+            for (IndexedBlock block : old) sizeBefore.putIfAbsent(block.fingerprint, bucketSize(block.fingerprint));
+            for (IndexedBlock block : old) retract(block);
+        }
+        if (blocks != null) {
+            for (IndexedBlock block : blocks) sizeBefore.putIfAbsent(block.fingerprint, bucketSize(block.fingerprint));
+            byFile.put(key, blocks);
+            for (IndexedBlock block : blocks) insert(block);
+        }
+
+        Delta delta = new Delta();
+        for (Map.Entry<Fingerprint, Integer> e : sizeBefore.entrySet()) {
+            int before = e.getValue();
+            int after = bucketSize(e.getKey());
+            if (before < 2 && after >= 2) delta.created.add(e.getKey());
+            else if (before >= 2 && after < 2) delta.resolved.add(e.getKey());
+            else if (before >= 2 && before != after) delta.resized.add(e.getKey());
+        }
+        Map<String, Double> scoresAfter = scores();
+        for (Map.Entry<String, Double> e : scoresAfter.entrySet()) {
+            double before = scoresBefore.getOrDefault(e.getKey(), 0.0);
+            if (before != e.getValue()) delta.scores.put(e.getKey(), new double[] {before, e.getValue()});
+        }
+        return delta;
+    }
+
+    private void insert(IndexedBlock block) {
+        List<IndexedBlock> bucket = byFingerprint.computeIfAbsent(block.fingerprint, k -> new ArrayList<>(2));
+        bucket.add(block);
+        counts(block)[0]++;
+        if (bucket.size() == 2) {
+            groupCount++;
+            counts(bucket.get(0))[1]++; // The first block just became a duplicate too
+        }
+        if (bucket.size() >= 2) counts(block)[1]++;
+        blockCount++;
+    }
+
+    private void retract(IndexedBlock block) {
+        List<IndexedBlock> bucket = byFingerprint.get(block.fingerprint);
+        if (bucket == null || !bucket.remove(block)) return;
+        counts(block)[0]--;
+        if (bucket.size() >= 1) counts(block)[1]--;
+        if (bucket.size() == 1) {
+            groupCount--;
+            counts(bucket.get(0))[1]--; // The last remaining block is no longer a duplicate
+        }
+        if (bucket.isEmpty()) byFingerprint.remove(block.fingerprint);
+        blockCount--;
+    }
+
+    private int bucketSize(Fingerprint fp) {
+        List<IndexedBlock> bucket = byFingerprint.get(fp);
+        return bucket != null ? bucket.size() : 0;
+    }
+
+    private int[] counts(IndexedBlock block) {
+        return languageCounts.computeIfAbsent(block.language, k -> new int[2]);
+    }
+
+    static String key(Path file) {
+        return file.toAbsolutePath().normalize().toString();
+    }
+}
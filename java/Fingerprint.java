@@ -0,0 +1,89 @@
+// Fingerprint.java
+// Compact 128-bit fingerprint of a normalized code block.
+// Two independent 64-bit hashes are kept: the low half is the hash table key, and
+// equality compares both halves. Blocks with equal 128-bit fingerprints are treated as
+// duplicates without comparing their text; an accidental match is not checked for.
+// Place this file in the java/ directory.
+
+public final class Fingerprint {
+    final long lo;   // Primary 64-bit hash (used as the hash table key)
+    final long hi;   // Secondary 64-bit hash (the other half of the 128-bit key)
+
+    public Fingerprint(long lo, long hi) {
+        this.lo = lo;
+        this.hi = hi;
+    }
+
+    // Fingerprint a whole character sequence
+    public static Fingerprint of(CharSequence text) {
+        Hasher h = new Hasher();
+        for (int i = 0; i < text.length(); i++) h.update(text.charAt(i));
+        return h.finish();
+    }
+
+    // Fingerprint raw bytes (used as a content hash for whole files)
+    public static Fingerprint ofBytes(java.nio.ByteBuffer bytes) {
+        Hasher h = new Hasher();
+        while (bytes.hasRemaining()) h.update((char) (bytes.get() & 0xff));
+        return h.finish();
+    }
+
+    // Hex form, used as the group key in duplicate maps
+    public String toHex() {
+        return String.format("%016x%016x", hi, lo);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (!(obj instanceof Fingerprint)) return false;
+        Fingerprint other = (Fingerprint) obj;
+        return lo == other.lo && hi == other.hi;
+    }
+
+    @Override
+    public int hashCode() {
+        return (int) (lo ^ (lo >>> 32));
+    }
+
+    @Override
+    public String toString() {
+        return toHex();
+    }
+
+    // Streaming hasher: feed characters one at a time, then call finish()
+    public static final class Hasher {
+        private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+        private static final long FNV_PRIME = 0x100000001b3L;
+        private static final long GOLDEN = 0x9e3779b97f4a7c15L;
+
+        private long a = FNV_OFFSET;  // FNV-1a over chars
+        private long b = GOLDEN;      // Multiply-rotate hash over chars
+        private long length = 0;
+
+        public void update(char c) {
+            a = (a ^ c) * FNV_PRIME;
+            b = Long.rotateLeft(b ^ (c * GOLDEN), 27) * 0xff51afd7ed558ccdL;
+            length++;
+        }
+
+        public Fingerprint finish() {
+            return new Fingerprint(mix(a ^ length), mix(b + length));
+        }
+
+        public void reset() {
+            a = FNV_OFFSET;
+            b = GOLDEN;
+            length = 0;
+        }
+
+        // MurmurHash3 fmix64 finalizer
+        private static long mix(long k) {
+            k ^= k >>> 33;
+            k *= 0xff51afd7ed558ccdL;
+            k ^= k >>> 33;
+            k *= 0xc4ceb9fe1a85ec53L;
+            k ^= k >>> 33;
+            return k;
+        }
+    }
+}
@@ -0,0 +1,223 @@
+// FingerprintIndex.java
+// Persistent, incremental index of extracted blocks and their fingerprints.
+// Entries are keyed by file path and content hash; a file whose content hash
+// matches its entry is never re-extracted or re-normalized. Misses go through the
+// ContentCache when one is set, so identical files are still extracted once per run.
+// Place this file in the java/ directory.
+
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class FingerprintIndex {
+    private static final int MAGIC = 0x44444958; // "DDIX"
+    private static final int VERSION = 4;
+
+    // A block as stored in the index: location, fingerprint and enclosing block, no code
+    static class BlockRecord {
+        final String type;      // "java"/"python" for CodeBlocks, "Class"/"Method" for parsed blocks
+        final String name;
+        final int startLine;
+        final int endLine;
+        final Fingerprint fingerprint;
+        final int parent;       // Position of the enclosing block in the same list (-1 if none)
+
+        BlockRecord(String type, String name, int startLine, int endLine, Fingerprint fingerprint, int parent) {
+            this.type = type;
+            this.name = name;
+            this.startLine = startLine;
+            this.endLine = endLine;
+            this.fingerprint = fingerprint;
+            this.parent = parent;
+        }
+    }
+
+    // Everything known about one file at one content hash
+    private static class Entry {
+        final Fingerprint content;
+        volatile List<BlockRecord> blocks;        // From JavaBlocks/PythonBlocks (null if not computed)
+        volatile List<BlockRecord> parsedBlocks;  // From JavaParserDuplicateDetection (null if not computed)
+
+        Entry(Fingerprint content) {
+            this.content = content;
+        }
+    }
+
+    private final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<>();
+    private final AtomicInteger hits = new AtomicInteger();
+    private final AtomicInteger misses = new AtomicInteger();
+    private ContentCache contentCache; // Optional: extracts the misses
+
+    // Load an index from disk; a missing or unreadable file yields an empty index
+    public static FingerprintIndex load(Path path) {
+        FingerprintIndex index = new FingerprintIndex();
+        if (!Files.exists(path)) return index;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path), 1 << 16))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                System.out.println("Ignoring incompatible index: " + path);
+                return index;
+            }
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                String key = in.readUTF();
+                Entry e = new Entry(new Fingerprint(in.readLong(), in.readLong()));
+                e.blocks = readRecords(in);
+                e.parsedBlocks = readRecords(in);
+                index.entries.put(key, e);
+            }
+        } catch (IOException e) {
+            System.out.println("Ignoring unreadable index: " + path + " (" + e.getMessage() + ")");
+            index.entries.clear();
+        }
+        return index;
+    }
+
+    // Write the index to disk. Entries for files that no longer exist are dropped.
+    public void save(Path path) throws IOException {
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        List<Map.Entry<String, Entry>> live = new ArrayList<>();
+        for (Map.Entry<String, Entry> e : entries.entrySet()) {
+            if (Files.exists(Paths.get(e.getKey()))) live.add(e);
+        }
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp), 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(live.size());
+            for (Map.Entry<String, Entry> e : live) {
+                out.writeUTF(e.getKey());
+                out.writeLong(e.getValue().content.lo);
+                out.writeLong(e.getValue().content.hi);
+                writeRecords(out, e.getValue().blocks);
+                writeRecords(out, e.getValue().parsedBlocks);
+            }
+        }
+        Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    // Extract misses through an in-run content cache (may be null)
+    public void setContentCache(ContentCache contentCache) {
+        this.contentCache = contentCache;
+    }
+
+    // Extract fingerprinted CodeBlocks from a file, reusing the cached entry when its content is unchanged
+    public List<CodeBlock> extractBlocks(Path file) throws IOException {
+        SourceFile source = SourceFile.read(file);
+        String filename = file.toString();
+        Entry e = entryFor(file, source.contentHash);
+
+        List<BlockRecord> cached = e.blocks;
+        if (cached != null) {
+            hits.incrementAndGet();
+            List<CodeBlock> blocks = new ArrayList<>(cached.size());
+            for (BlockRecord r : cached) {
+                CodeBlock cb = new CodeBlock(r.name, r.startLine, r.endLine, r.type,
+                        source, source.lineStart(r.startLine), source.lineEnd(r.endLine));
+                cb.fingerprint = r.fingerprint;
+                if (r.parent >= 0) cb.parent = blocks.get(r.parent); // Enclosing blocks come first
+                blocks.add(cb);
+            }
+            return blocks;
+        }
+
+        misses.incrementAndGet();
+        List<CodeBlock> blocks;
+        if (contentCache != null && (filename.endsWith(".py") || filename.endsWith(".java"))) {
+            blocks = contentCache.extractBlocks(source);
+        } else if (filename.endsWith(".py")) {
+            blocks = PythonBlocks.extractPythonBlocks(source);
+        } else if (filename.endsWith(".java")) {
+            blocks = JavaBlocks.extractJavaBlocks(source);
+        } else {
+            return new ArrayList<>();
+        }
+        DuplicateDetection.fingerprintAll(blocks);
+        List<BlockRecord> records = new ArrayList<>(blocks.size());
+        Map<CodeBlock, Integer> position = new IdentityHashMap<>();
+        for (CodeBlock cb : blocks) {
+            Integer parent = cb.parent != null ? position.get(cb.parent) : null;
+            records.add(new BlockRecord(cb.language, cb.name, cb.startLine, cb.endLine, DuplicateDetection.fingerprintOf(cb),
+                    parent != null ? parent : -1));
+            position.put(cb, position.size());
+        }
+        e.blocks = records;
+        return blocks;
+    }
+
+    // Extract JavaParser blocks from a file, reusing the cached entry when its content is unchanged
+    public List<JavaParserDuplicateDetection.Block> extractParsedBlocks(Path file) throws IOException {
+        SourceFile source = SourceFile.read(file);
+        Entry e = entryFor(file, source.contentHash);
+
+        List<BlockRecord> cached = e.parsedBlocks;
+        if (cached != null) {
+            hits.incrementAndGet();
+            List<JavaParserDuplicateDetection.Block> blocks = new ArrayList<>(cached.size());
+            for (BlockRecord r : cached) {
+                JavaParserDuplicateDetection.Block b =
+                        new JavaParserDuplicateDetection.Block(r.type, r.name, r.startLine, r.endLine, r.fingerprint);
+                b.source = source;
+                blocks.add(b);
+            }
+            return blocks;
+        }
+
+        misses.incrementAndGet();
+        List<JavaParserDuplicateDetection.Block> blocks = contentCache != null
+                ? contentCache.extractParsedBlocks(source, JavaParserDuplicateDetection.Options.DEFAULT)
+                : JavaParserDuplicateDetection.extractBlocks(source);
+        List<BlockRecord> records = new ArrayList<>(blocks.size());
+        for (JavaParserDuplicateDetection.Block b : blocks) {
+            records.add(new BlockRecord(b.type, b.name, b.startLine, b.endLine, b.fingerprint, -1));
+        }
+        e.parsedBlocks = records;
+        return blocks;
+    }
+
+    public int hits() {
+        return hits.get();
+    }
+
+    public int misses() {
+        return misses.get();
+    }
+
+    // Returns the entry for this file at this content hash, replacing a stale one
+    private Entry entryFor(Path file, Fingerprint content) {
+        String key = file.toAbsolutePath().normalize().toString();
+        return entries.compute(key, (k, old) -> old != null && old.content.equals(content) ? old : new Entry(content));
+    }
+
+    private static List<BlockRecord> readRecords(DataInputStream in) throws IOException {
+        int n = in.readInt();
+        if (n < 0) return null;
+        List<BlockRecord> records = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            String type = in.readUTF();
+            String name = in.readUTF();
+            int start = in.readInt();
+            int end = in.readInt();
+            Fingerprint fingerprint = new Fingerprint(in.readLong(), in.readLong());
+            records.add(new BlockRecord(type, name, start, end, fingerprint, in.readInt()));
+        }
+        return records;
+    }
+
+    private static void writeRecords(DataOutputStream out, List<BlockRecord> records) throws IOException {
+        if (records == null) {
+            out.writeInt(-1);
+            return;
+        }
+        out.writeInt(records.size());
+        for (BlockRecord r : records) {
+            out.writeUTF(r.type);
+            out.writeUTF(r.name);
+            out.writeInt(r.startLine);
+            out.writeInt(r.endLine);
+            out.writeLong(r.fingerprint.lo);
+            out.writeLong(r.fingerprint.hi);
+            out.writeInt(r.parent);
+        }
+    }
+}
@@ -0,0 +1,343 @@
+// JavaBlockLexer.java
+// Single-pass, lexer-based extractor of Java class / method / control blocks.
+// The source is tokenized exactly once; braces are only counted on real tokens
+// (never inside strings, chars, text blocks or comments), and every block is
+// emitted with its enclosing block in one linear pass without per-line allocation.
+// Place this file in the java/ directory.
+
+import java.util.*;
+
+public final class JavaBlockLexer {
+    // Kinds of brace-delimited regions
+    private static final int OTHER = 0;
+    private static final int CLASS = 1;
+    private static final int METHOD = 2;
+    private static final int CONTROL = 3;
+
+    // Kinds of the previous significant token
+    private static final int T_NONE = 0;
+    private static final int T_WORD = 1;
+    private static final int T_AT = 2;       // '@'
+    private static final int T_ANNOTATION = 3; // Word right after '@'
+    private static final int T_TYPE_END = 4; // '>' or ']' (end of a generic or array type)
+    private static final int T_OTHER = 5;
+
+    private final CharSequence text;
+    private final int end;
+    private int pos;
+    private int line = 1;
+
+    // Header state: tokens seen since the last ';', '{' or '}'
+    private int parenDepth;
+    private int firstWordStart = -1, firstWordEnd;   // First non-annotation word at paren depth 0
+    private int secondWordStart = -1, secondWordEnd;
+    private int headerLine;
+    private boolean expectClassName;
+    private int classNameStart = -1, classNameEnd;
+    private int methodNameStart = -1, methodNameEnd;
+    private boolean notMethod;                       // '=', '->' or 'new' seen before the parameter list
+    private int prevKind = T_NONE, prevPrevKind = T_NONE;
+    private int prevWordStart, prevWordEnd;
+
+    // Open braces: node index (or -1) and the paren depth of the enclosing header
+    private int[] stackNode = new int[32];
+    private int[] stackParen = new int[32];
+    private int depth;
+
+    private final List<JavaNode> nodes = new ArrayList<>();
+
+    private JavaBlockLexer(CharSequence text) {
+        this.text = text;
+        this.end = text.length();
+    }
+
+    // Extract all blocks of a Java source text, in source (pre-)order
+    public static List<JavaNode> extract(CharSequence text) {
+        JavaBlockLexer lexer = new JavaBlockLexer(text);
+        lexer.run();
+        return lexer.nodes;
+    }
+
+    private void run() {
+        resetHeader();
+        while (pos < end) {
+            char c = text.charAt(pos);
+            if (isLineBreak(pos)) {
+                line++;
+                pos++;
+            } else if (c == ' ' || c == '\t' || c == '\r' || c == '\f') {
+                pos++;
+            } else if (c == '/' && pos + 1 < end && text.charAt(pos + 1) == '/') {
+                while (pos < end && text.charAt(pos) != '\n' && text.charAt(pos) != '\r') pos++;
+            } else if (c == '/' && pos + 1 < end && text.charAt(pos + 1) == '*') {
+                skipBlockComment();
+            } else if (c == '"') {
+                markHeaderStart();
+                skipString();
+                token(T_OTHER);
+            } else if (c == '\'') {
+                markHeaderStart();
+                skipChar();
+                token(T_OTHER);
+            } else if (Character.isJavaIdentifierStart(c)) {
+                int start = pos;
+                while (pos < end && Character.isJavaIdentifierPart(text.charAt(pos))) pos++;
+                word(start, pos);
+            } else if (Character.isDigit(c)) {
+                markHeaderStart();
+                while (pos < end && (Character.isLetterOrDigit(text.charAt(pos)) || text.charAt(pos) == '.' || text.charAt(pos) == '_')) pos++;
+                token(T_OTHER);
+            } else {
+                pos++;
+                punct(c);
+            }
+        }
+        // Blocks left open at end of file end on the last line
+        while (depth > 0) close();
+    }
+
+    private void word(int start, int stop) {
+        if (prevKind == T_AT) {
+            token(T_ANNOTATION);
+            return;
+        }
+        if (parenDepth == 0) {
+            if (firstWordStart < 0) {
+                firstWordStart = start;
+                firstWordEnd = stop;
+                if (headerLine < 0) headerLine = line;
+            } else if (secondWordStart < 0) {
+                secondWordStart = start;
+                secondWordEnd = stop;
+            }
+            if (expectClassName) {
+                classNameStart = start;
+                classNameEnd = stop;
+                expectClassName = false;
+            } else if (classNameStart < 0 && prevKind != T_OTHER
+                    && (is(start, stop, "class") || is(start, stop, "interface") || is(start, stop, "enum"))) {
+                expectClassName = true;
+            }
+            if (is(start, stop, "new")) notMethod = true;
+        }
+        prevWordStart = start;
+        prevWordEnd = stop;
+        token(T_WORD);
+    }
+
+    private void punct(char c) {
+        switch (c) {
+            case '{':
+                open();
+                return;
+            case '}':
+                close(); // Restores the paren depth of the enclosing header
+                resetHeader();
+                return;
+            case ';':
+                if (parenDepth == 0) resetHeader();
+                else token(T_OTHER);
+                return;
+            case '(':
+                if (parenDepth == 0 && prevKind == T_WORD && methodNameStart < 0 && !notMethod
+                        && (prevPrevKind == T_WORD || prevPrevKind == T_TYPE_END)) {
+                    methodNameStart = prevWordStart;
+                    methodNameEnd = prevWordEnd;
+                }
+                if (prevKind == T_WORD || prevKind == T_ANNOTATION) markHeaderStart();
+                parenDepth++;
+                token(T_OTHER);
+                return;
+            case ')':
+                if (parenDepth > 0) parenDepth--;
+                token(T_OTHER);
+                return;
+            case '@':
+                token(T_AT);
+                return;
+            case '>':
+                if (parenDepth == 0 && pos >= 2 && text.charAt(pos - 2) == '-') notMethod = true; // Lambda arrow
+                markHeaderStart();
+                token(parenDepth == 0 && (prevKind == T_WORD || prevKind == T_TYPE_END) ? T_TYPE_END : T_OTHER);
+                return;
+            case ']':
+                markHeaderStart();
+                token(parenDepth == 0 ? T_TYPE_END : T_OTHER);
+                return;
+            case '=':
+                if (parenDepth == 0 && methodNameStart < 0) notMethod = true;
+                markHeaderStart();
+                token(T_OTHER);
+                return;
+            default:
+                markHeaderStart();
+                token(T_OTHER);
+        }
+    }
+
+    // '{': classify the header that precedes it and push a frame
+    private void open() {
+        int kind = OTHER;
+        String name = null;
+        if (parenDepth == 0) {
+            if (classNameStart >= 0) {
+                kind = CLASS;
+                name = text.subSequence(classNameStart, classNameEnd).toString();
+            } else if (firstWordStart >= 0 && isControl(firstWordStart, firstWordEnd)) {
+                kind = CONTROL;
+                String keyword = text.subSequence(firstWordStart, firstWordEnd).toString().toUpperCase();
+                if (keyword.equals("ELSE") && secondWordStart >= 0 && is(secondWordStart, secondWordEnd, "if")) {
+                    keyword = "ELSE IF";
+                }
+                name = keyword + "_BLOCK_" + headerLine;
+            } else if (methodNameStart >= 0 && !notMethod && firstWordStart >= 0 && !isKeywordStart(firstWordStart, firstWordEnd)) {
+                kind = METHOD;
+                name = text.subSequence(methodNameStart, methodNameEnd).toString();
+            }
+        }
+        int nodeIndex = -1;
+        if (kind != OTHER) {
+            JavaNode node = new JavaNode(kind == CLASS ? "class" : kind == METHOD ? "method" : "control",
+                    name, headerLine, headerLine);
+            node.parent = enclosingNode();
+            nodeIndex = nodes.size();
+            nodes.add(node);
+        }
+        push(nodeIndex, parenDepth);
+        parenDepth = 0;
+        resetHeader();
+    }
+
+    // '}': pop a frame and close its node
+    private void close() {
+        if (depth == 0) return; // Unbalanced '}'
+        depth--;
+        int nodeIndex = stackNode[depth];
+        if (nodeIndex >= 0) nodes.get(nodeIndex).endLine = line;
+        parenDepth = stackParen[depth];
+    }
+
+    private int enclosingNode() {
+        for (int d = depth - 1; d >= 0; d--) {
+            if (stackNode[d] >= 0) return stackNode[d];
+        }
+        return -1;
+    }
+
+    private void push(int nodeIndex, int savedParen) {
+        if (depth == stackNode.length) {
+            stackNode = Arrays.copyOf(stackNode, depth * 2);
+            stackParen = Arrays.copyOf(stackParen, depth * 2);
+        }
+        stackNode[depth] = nodeIndex;
+        stackParen[depth] = savedParen;
+        depth++;
+    }
+
+    // Forget the current header (the paren depth is managed by open/close)
+    private void resetHeader() {
+        firstWordStart = -1;
+        secondWordStart = -1;
+        headerLine = -1;
+        expectClassName = false;
+        classNameStart = -1;
+        methodNameStart = -1;
+        notMethod = false;
+        prevKind = T_NONE;
+        prevPrevKind = T_NONE;
+    }
+
+    private void token(int kind) {
+        prevPrevKind = prevKind;
+        prevKind = kind;
+    }
+
+    // Headers that start with punctuation or literals still need a start line
+    private void markHeaderStart() {
+        if (headerLine < 0 && parenDepth == 0 && prevKind != T_AT && prevKind != T_ANNOTATION) headerLine = line;
+    }
+
+    private boolean isControl(int start, int stop) {
+        return is(start, stop, "if") || is(start, stop, "else") || is(start, stop, "for")
+                || is(start, stop, "while") || is(start, stop, "do");
+    }
+
+    // Statements starting with these words are never method declarations
+    private boolean isKeywordStart(int start, int stop) {
+        return is(start, stop, "return") || is(start, stop, "new") || is(start, stop, "throw")
+                || is(start, stop, "switch") || is(start, stop, "try") || is(start, stop, "catch")
+                || is(start, stop, "synchronized") || is(start, stop, "case") || is(start, stop, "yield");
+    }
+
+    // Compare text[start, stop) with a keyword without allocating
+    private boolean is(int start, int stop, String keyword) {
+        if (stop - start != keyword.length()) return false;
+        for (int i = 0; i < keyword.length(); i++) {
+            if (text.charAt(start + i) != keyword.charAt(i)) return false;
+        }
+        return true;
+    }
+
+    private void skipBlockComment() {
+        pos += 2;
+        while (pos < end) {
+            char c = text.charAt(pos);
+            if (c == '*' && pos + 1 < end && text.charAt(pos + 1) == '/') {
+                pos += 2;
+                return;
+            }
+            if (isLineBreak(pos)) line++;
+            pos++;
+        }
+    }
+
+    // A line ends at \n, \r\n or a bare \r, as in SourceFile; \r\n is counted at its \n
+    private boolean isLineBreak(int at) {
+        char c = text.charAt(at);
+        return c == '\n' || (c == '\r' && (at + 1 >= end || text.charAt(at + 1) != '\n'));
+    }
+
+    private void skipString() {
+        boolean textBlock = pos + 2 < end && text.charAt(pos + 1) == '"' && text.charAt(pos + 2) == '"';
+        pos += textBlock ? 3 : 1;
+        while (pos < end) {
+            char c = text.charAt(pos);
+            if (c == '\\' && pos + 1 < end) {
+                if (isLineBreak(pos + 1)) line++;
+                pos += 2;
+                continue;
+            }
+            if (c == '"') {
+                if (!textBlock) {
+                    pos++;
+                    return;
+                }
+                if (pos + 2 < end && text.charAt(pos + 1) == '"' && text.charAt(pos + 2) == '"') {
+                    pos += 3;
+                    return;
+                }
+            }
+            if (c == '\n' || c == '\r') {
+                if (!textBlock) return; // Unterminated literal: recover at end of line
+                if (isLineBreak(pos)) line++;
+            }
+            pos++;
+        }
+    }
+
+    private void skipChar() {
+        pos++;
+        while (pos < end) {
+            char c = text.charAt(pos);
+            if (c == '\\' && pos + 1 < end) {
+                pos += 2;
+                continue;
+            }
+            if (c == '\'' || c == '\n' || c == '\r') {
+                if (c == '\'') pos++;
+                return;
+            }
+            pos++;
+        }
+    }
+}
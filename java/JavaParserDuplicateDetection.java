@@ -2,7 +2,9 @@ import com.github.javaparser.*;
 import com.github.javaparser.ast.*;
 import com.github.javaparser.ast.body.*;
 import java.io.*;
+import java.nio.file.*;
 import java.util.*;
+import java.util.stream.*;
 
 public class JavaParserDuplicateDetection {
     public static class Block {
@@ -10,32 +12,231 @@ public class JavaParserDuplicateDetection {
         String name;
         int startLine;
         int endLine;
-        String code;  // Normalized code
+        Fingerprint fingerprint;  // Fingerprint of the normalized code
+        SourceFile source;  // Source file the block was parsed from, shared by all its blocks
 
-        public Block(String type, String name, int startLine, int endLine, String code) {
+        // A block with its structural hash (or one already known, e.g. from the fingerprint index)
+        public Block(String type, String name, int startLine, int endLine, Fingerprint fingerprint) {
             this.type = type;
             this.name = name;
             this.startLine = startLine;
             this.endLine = endLine;
-            this.code = normalizeCode(code);
+            this.fingerprint = fingerprint;
         }
 
-        private String normalizeCode(String code) {
-            return code.replaceAll("//.*?\\n", "")      // remove single-line comments
-                       .replaceAll("/\\*.*?\\*/", "")   // remove block comments
-                       .replaceAll("\\s+", "");         // remove all whitespace
+        // Original source text of the block's lines, sliced from the in-memory source buffer
+        public String snippet() {
+            if (source == null) return "";
+            String text = source.text(source.lineStart(startLine), source.lineEnd(endLine));
+            return text.endsWith("\n") ? text : text + "\n";
         }
 
         @Override
         public boolean equals(Object obj) {
             if (!(obj instanceof Block)) return false;
             Block other = (Block) obj;
-            return this.code.equals(other.code);
+            return this.fingerprint.equals(other.fingerprint);
         }
 
         @Override
         public int hashCode() {
-            return code.hashCode();
+            return fingerprint.hashCode();
+        }
+    }
+
+    // One JavaParser per thread, reused across files. Comment attribution is off:
+    // comments never take part in duplicate detection.
+    private static final ThreadLocal<JavaParser> PARSERS = ThreadLocal.withInitial(() ->
+            new JavaParser(new ParserConfiguration().setAttributeComments(false)));
+
+    // What extractBlocks reports and how nodes are hashed
+    public static class Options {
+        static final Options DEFAULT = new Options(false, false, 0);
+
+        final boolean anonymize;        // Hash every identifier as the same placeholder
+        final boolean allGranularities; // Also report constructors, lambdas, blocks and statements
+        final int minNodes;             // Smallest subtree reported at the finer granularities
+
+        public Options(boolean anonymize, boolean allGranularities, int minNodes) {
+            this.anonymize = anonymize;
+            this.allGranularities = allGranularities;
+            this.minNodes = minNodes;
+        }
+
+        boolean isDefault() {
+            return !anonymize && !allGranularities;
+        }
+
+        // Options that yield the same blocks and hashes are equal; minNodes only matters at all granularities
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Options)) return false;
+            Options other = (Options) obj;
+            return anonymize == other.anonymize && allGranularities == other.allGranularities
+                    && (!allGranularities || minNodes == other.minNodes);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(anonymize, allGranularities, allGranularities ? minNodes : 0);
+        }
+
+        // The command-line flags of Main that select these options
+        @Override
+        public String toString() {
+            return "--java-granularity " + (allGranularities ? "all --java-min-nodes " + minNodes : "declarations")
+                    + (anonymize ? " --java-anonymize" : "");
+        }
+    }
+
+    // Parse one file and return its class and method blocks
+    public static List<Block> extractBlocks(Path file) throws IOException {
+        return extractBlocks(SourceFile.read(file));
+    }
+
+    // Parse an already-read source file and return its class and method blocks
+    public static List<Block> extractBlocks(SourceFile source) throws IOException {
+        return extractBlocks(source, Options.DEFAULT);
+    }
+
+    // Parse an already-read source file and return its blocks. Every node gets a structural
+    // hash in one bottom-up pass (see StructuralHash); a block's fingerprint is the hash of
+    // its node, or of its body for methods and constructors. Nothing is pretty-printed.
+    public static List<Block> extractBlocks(SourceFile source, Options options) throws IOException {
+        ParseResult<CompilationUnit> result = PARSERS.get().parse(source.text.toString());
+        if (!result.getResult().isPresent()) {
+            throw new IOException("Cannot parse " + source.path + ": " + result.getProblems());
+        }
+        CompilationUnit cu = result.getResult().get();
+        StructuralHash hashes = new StructuralHash(cu, options.anonymize);
+
+        // Methods belong to their nearest enclosing class; nested classes report their own
+        Map<Node, List<MethodDeclaration>> methodsOf = new IdentityHashMap<>();
+        List<MethodDeclaration> topLevel = new ArrayList<>();
+        for (Node node : hashes.nodes()) {
+            if (!(node instanceof MethodDeclaration)) continue;
+            MethodDeclaration method = (MethodDeclaration) node;
+            Optional<ClassOrInterfaceDeclaration> owner = method.findAncestor(ClassOrInterfaceDeclaration.class);
+            if (owner.isPresent()) methodsOf.computeIfAbsent(owner.get(), k -> new ArrayList<>()).add(method);
+            else topLevel.add(method);
+        }
+
+        List<Block> blocks = new ArrayList<>();
+        for (Node node : hashes.nodes()) {
+            if (!(node instanceof ClassOrInterfaceDeclaration)) continue;
+            ClassOrInterfaceDeclaration cls = (ClassOrInterfaceDeclaration) node;
+            blocks.add(block("Class", cls.getNameAsString(), cls, hashes.of(cls)));
+            for (MethodDeclaration method : methodsOf.getOrDefault(cls, Collections.emptyList())) {
+                blocks.add(block("Method", method.getNameAsString(), method, bodyHash(hashes, method.getBody())));
+            }
+        }
+        for (MethodDeclaration method : topLevel) {
+            blocks.add(block("Method", method.getNameAsString(), method, bodyHash(hashes, method.getBody())));
+        }
+
+        if (options.allGranularities) {
+            for (Node node : hashes.nodes()) {
+                if (hashes.size(node) < options.minNodes) continue;
+                if (node instanceof ConstructorDeclaration) {
+                    ConstructorDeclaration ctor = (ConstructorDeclaration) node;
+                    blocks.add(block("Constructor", ctor.getNameAsString(), ctor, hashes.of(ctor.getBody())));
+                } else if (node instanceof com.github.javaparser.ast.expr.LambdaExpr) {
+                    blocks.add(block("Lambda", "lambda", node, hashes.of(node)));
+                } else if (node instanceof com.github.javaparser.ast.stmt.Statement && !isBody(node)) {
+                    String kind = node.getClass().getSimpleName().replaceAll("Stmt$", "");
+                    blocks.add(block("Statement", kind, node, hashes.of(node)));
+                }
+            }
+        }
+        for (Block b : blocks) b.source = source;
+        return blocks;
+    }
+
+    private static Block block(String type, String name, Node node, Fingerprint fingerprint) {
+        return new Block(type, name, node.getBegin().get().line, node.getEnd().get().line, fingerprint);
+    }
+
+    // Methods are compared by their body; abstract methods all share the empty body's hash
+    private static Fingerprint bodyHash(StructuralHash hashes, Optional<? extends Node> body) {
+        return body.isPresent() ? hashes.of(body.get()) : StructuralHash.EMPTY;
+    }
+
+    // A body block is reported through its method, constructor or lambda
+    private static boolean isBody(Node node) {
+        if (!(node instanceof com.github.javaparser.ast.stmt.BlockStmt) || !node.getParentNode().isPresent()) return false;
+        Node parent = node.getParentNode().get();
+        return parent instanceof CallableDeclaration || parent instanceof com.github.javaparser.ast.expr.LambdaExpr
+                || parent instanceof InitializerDeclaration;
+    }
+
+    // Parse all files (in parallel, one parser per worker thread) and return their blocks in file order
+    public static List<Block> extractBlocks(List<Path> files) throws IOException {
+        return extractBlocks(files, null);
+    }
+
+    // Same as above, but unchanged files are served from the fingerprint index (may be null)
+    public static List<Block> extractBlocks(List<Path> files, FingerprintIndex index) throws IOException {
+        return extractBlocks(files, index, Options.DEFAULT, null);
+    }
+
+    // Same as above with non-default options; the index only caches default-option blocks.
+    // Files identical to one already parsed in this run are served from contentCache (may be null).
+    public static List<Block> extractBlocks(List<Path> files, FingerprintIndex index, Options options,
+            ContentCache contentCache) throws IOException {
+        FingerprintIndex cache = options.isDefault() ? index : null;
+        // A file that cannot be read or parsed is skipped; the other files are still compared
+        List<List<Block>> perFile = files.parallelStream().map(f -> {
+            try {
+                if (cache != null) return cache.extractParsedBlocks(f);
+                if (contentCache != null) return contentCache.extractParsedBlocks(f, options);
+                return extractBlocks(SourceFile.read(f), options);
+            } catch (IOException | UncheckedIOException e) {
+                System.out.println("Cannot parse: " + f + " (" + e.getMessage() + ")");
+                return Collections.<Block>emptyList();
+            }
+        }).collect(Collectors.toList());
+        List<Block> all = new ArrayList<>();
+        for (List<Block> blocks : perFile) all.addAll(blocks);
+        return all;
+    }
+
+    // Group blocks by normalized code and return only the groups with more than one block
+    public static List<List<Block>> findDuplicates(List<Block> blocks) {
+        Map<Fingerprint, List<Block>> groups = new LinkedHashMap<>();
+        for (Block block : blocks) {
+            groups.computeIfAbsent(block.fingerprint, k -> new ArrayList<>()).add(block);
+        }
+        List<List<Block>> duplicates = new ArrayList<>();
+        for (List<Block> group : groups.values()) {
+            if (group.size() > 1) duplicates.add(group);
+        }
+        return duplicates;
+    }
+
+    // Same grouping with bounded memory, spilling to partition files under spillDir
+    // once the records exceed memoryLimit bytes; the result is identical to findDuplicates(blocks)
+    public static List<List<Block>> findDuplicates(List<Block> blocks, long memoryLimit, Path spillDir) throws IOException {
+        List<List<Block>> duplicates = new ArrayList<>();
+        try (SpillingGrouper grouper = new SpillingGrouper(memoryLimit, spillDir)) {
+            for (int i = 0; i < blocks.size(); i++) grouper.add(blocks.get(i).fingerprint, i);
+            for (int[] members : grouper.groups()) {
+                List<Block> group = new ArrayList<>(members.length);
+                for (int i : members) group.add(blocks.get(i));
+                duplicates.add(group);
+            }
+            Metrics.count("spilled_records", grouper.spilledRecords());
+        }
+        return duplicates;
+    }
+
+    // Print duplicate groups in the same format the command-line tool has always used
+    public static void printGroups(List<List<Block>> groups, PrintStream out) {
+        for (List<Block> group : groups) {
+            out.println("Duplicate block found:");
+            for (Block b : group) {
+                out.printf("  -> %s %s [%d-%d]\n", b.type, b.name, b.startLine, b.endLine);
+            }
+            out.println("------");
         }
     }
 
@@ -45,43 +246,11 @@ public class JavaParserDuplicateDetection {
             return;
         }
 
-        List<Block> allBlocks = new ArrayList<>();
-        for (String filename : args) {
-            CompilationUnit cu = StaticJavaParser.parse(new File(filename));
-            // Classes
-            cu.findAll(ClassOrInterfaceDeclaration.class).forEach(cls -> {
-                allBlocks.add(new Block("Class", cls.getNameAsString(),
-                        cls.getBegin().get().line, cls.getEnd().get().line, cls.toString()));
-                // Methods
-                cls.findAll(MethodDeclaration.class).forEach(method -> {
-                    allBlocks.add(new Block("Method", method.getNameAsString(),
-                            method.getBegin().get().line, method.getEnd().get().line, method.getBody().map(Object::toString).orElse("")));
-                });
-            });
-            // Top-level methods (if any)
-            cu.findAll(MethodDeclaration.class).stream()
-                .filter(m -> !m.findAncestor(ClassOrInterfaceDeclaration.class).isPresent())
-                .forEach(method -> {
-                    allBlocks.add(new Block("Method", method.getNameAsString(),
-                            method.getBegin().get().line, method.getEnd().get().line, method.getBody().map(Object::toString).orElse("")));
-                });
-        }
-
-        // Group by normalized code
-        Map<String, List<Block>> duplicates = new HashMap<>();
-        for (Block block : allBlocks) {
-            duplicates.computeIfAbsent(block.code, k -> new ArrayList<>()).add(block);
-        }
+        List<Path> files = new ArrayList<>();
+        for (String filename : args) files.add(Paths.get(filename));
+        List<Block> allBlocks = extractBlocks(files);
 
         // Print duplicates
-        for (List<Block> group : duplicates.values()) {
-            if (group.size() > 1) {
-                System.out.println("Duplicate block found:");
-                for (Block b : group) {
-                    System.out.printf("  -> %s %s [%d-%d]\n", b.type, b.name, b.startLine, b.endLine);
-                }
-                System.out.println("------");
-            }
-        }
+        printGroups(findDuplicates(allBlocks), System.out);
     }
-} 
\ No newline at end of file
+}
@@ -4,6 +4,7 @@
 // Place this file in the java/ directory.
 
 import java.io.*;
+import java.nio.file.*;
 import java.util.*;
 
 public class Main {
@@ -26,143 +27,350 @@ public class Main {
         }
     }
 
+    // Same for a file that has already been read
+    public static List<CodeBlock> extractBlocks(SourceFile source) {
+        if (source.path.endsWith(".py")) {
+            return PythonBlocks.extractPythonBlocks(source);
+        } else if (source.path.endsWith(".java")) {
+            return JavaBlocks.extractJavaBlocks(source);
+        } else {
+            System.out.println("Unsupported file type: " + source.path);
+            return new ArrayList<>();
+        }
+    }
+
+    // Usage: java Main [--scan <dir>]... [--include <glob>]... [--exclude <glob>]...
+    //                  [--threads <n>] [--max-open-files <n>] [--index <file>]
+    //                  [--near <jaccard threshold, e.g. 0.8>] [--repeats <min tokens>]
+    //                  [--report jsonl|sarif]...
+    //                  [--max-memory <MB for grouping; spills to disk beyond it>] [--spill-dir <dir>]
+    //                  [--shard-index <file>] [--shard-root <dir that shard paths are relative to, default .>]
+    //                  [--java-granularity declarations|all] [--java-min-nodes <n, default 30>] [--java-anonymize]
+    //                  [--python-ast] [--python-min-tokens <n, default 30>] [--no-content-cache]
+    // Without --scan the two files under tests/ are used.
+    @SuppressWarnings("try") // Phases are only opened to be timed
     public static void main(String[] args) throws IOException {
-        // Use the new tests directory for input files
-        String[] filenames = {"tests/EmployeeManager1.java", "tests/python_test.py"};
-        List<CodeBlock> allBlocks = new ArrayList<>();
+        List<Path> scanRoots = new ArrayList<>();
+        List<String> includes = new ArrayList<>();
+        List<String> excludes = new ArrayList<>();
+        int threads = 0;
+        int maxOpenFiles = 64;
+        Path indexPath = null;
+        double nearThreshold = 0.0;
+        int repeatMinTokens = 0;
+        List<String> reportFormats = new ArrayList<>();
+        long maxMemory = 0; // Bytes; 0 = group in memory
+        Path spillDir = Paths.get(System.getProperty("java.io.tmpdir"));
+        Path shardIndexPath = null;
+        Path shardRoot = Paths.get(".");
+        boolean javaAllGranularities = false;
+        int javaMinNodes = 30;
+        boolean javaAnonymize = false;
+        boolean pythonAst = false;
+        int pythonMinTokens = 30;
+        boolean contentCache = true;
+        for (int a = 0; a < args.length; a++) {
+            switch (args[a]) {
+                case "--scan": scanRoots.add(Paths.get(args[++a])); break;
+                case "--include": includes.add(args[++a]); break;
+                case "--exclude": excludes.add(args[++a]); break;
+                case "--threads": threads = Integer.parseInt(args[++a]); break;
+                case "--max-open-files": maxOpenFiles = Integer.parseInt(args[++a]); break;
+                case "--index": indexPath = Paths.get(args[++a]); break;
+                case "--near": nearThreshold = Double.parseDouble(args[++a]); break;
+                case "--repeats": repeatMinTokens = Integer.parseInt(args[++a]); break;
+                case "--report": reportFormats.add(args[++a]); break;
+                case "--max-memory": maxMemory = Long.parseLong(args[++a]) << 20; break;
+                case "--spill-dir": spillDir = Paths.get(args[++a]); break;
+                case "--shard-index": shardIndexPath = Paths.get(args[++a]); break;
+                case "--shard-root": shardRoot = Paths.get(args[++a]); break;
+                case "--java-granularity": javaAllGranularities = args[++a].equals("all"); break;
+                case "--java-min-nodes": javaMinNodes = Integer.parseInt(args[++a]); break;
+                case "--java-anonymize": javaAnonymize = true; break;
+                case "--python-ast": pythonAst = true; break;
+                case "--python-min-tokens": pythonMinTokens = Integer.parseInt(args[++a]); break;
+                case "--no-content-cache": contentCache = false; break;
+                default:
+                    System.out.println("Unknown argument: " + args[a]);
+                    return;
+            }
+        }
+
+        // Persistent fingerprint index: unchanged files are not re-extracted
+        FingerprintIndex index = indexPath != null ? FingerprintIndex.load(indexPath) : null;
+        // Byte-identical files are processed once per run
+        ContentCache cache = contentCache ? new ContentCache() : null;
+        if (index != null) index.setContentCache(cache);
 
-        for (String file : filenames) {
-            File f = new File(file);
-            if (f.exists()) {
-                allBlocks.addAll(extractBlocks(file));
+        List<CodeBlock> allBlocks = new ArrayList<>();
+        // --python-ast statement blocks: grouped and printed with the others, but never scored or indexed
+        List<CodeBlock> statementBlocks = new ArrayList<>();
+        List<Path> javaFiles = new ArrayList<>();
+        List<Path> sourceFiles = new ArrayList<>();
+        try (Metrics.Phase phase = Metrics.phase("extract")) {
+            if (!scanRoots.isEmpty()) {
+                // Walk the directory trees and extract blocks in parallel
+                DirectoryScanner scanner = new DirectoryScanner(includes, excludes, threads, maxOpenFiles);
+                scanner.setIndex(index);
+                scanner.setContentCache(cache);
+                List<Path> files = scanner.listFiles(scanRoots);
+                allBlocks.addAll(scanner.extractAll(files));
+                sourceFiles.addAll(files);
+                for (Path p : files) {
+                    if (p.toString().endsWith(".java")) javaFiles.add(p);
+                }
             } else {
-                System.out.println("File not found: " + file);
+                // Use the new tests directory for input files
+                String[] filenames = {"tests/EmployeeManager1.java", "tests/python_test.py"};
+                for (String file : filenames) {
+                    File f = new File(file);
+                    if (f.exists()) {
+                        allBlocks.addAll(index != null ? index.extractBlocks(f.toPath())
+                                : cache != null ? cache.extractBlocks(f.toPath())
+                                : extractBlocks(file));
+                        sourceFiles.add(f.toPath());
+                        if (file.endsWith(".java")) javaFiles.add(f.toPath());
+                    } else {
+                        System.out.println("File not found: " + file);
+                    }
+                }
+            }
+
+            // Structural (AST) fingerprints for Python blocks, plus statement-level blocks kept apart
+            if (pythonAst) {
+                Map<SourceFile, List<CodeBlock>> pythonBlocks = new LinkedHashMap<>();
+                for (CodeBlock block : allBlocks) {
+                    if ("python".equals(block.language) && block.source != null) {
+                        pythonBlocks.computeIfAbsent(block.source, k -> new ArrayList<>()).add(block);
+                    }
+                }
+                final int minTokens = pythonMinTokens;
+                List<List<CodeBlock>> added = pythonBlocks.entrySet().parallelStream()
+                        .map(e -> PythonAst.fingerprintBlocks(e.getKey(), e.getValue(), minTokens))
+                        .collect(java.util.stream.Collectors.toList());
+                for (List<CodeBlock> blocks : added) statementBlocks.addAll(blocks);
+                Metrics.count("blocks_python_statement", statementBlocks.size());
+            }
+
+            Metrics.count("files", sourceFiles.size());
+            Map<String, Long> perLanguage = new TreeMap<>();
+            for (CodeBlock block : allBlocks) perLanguage.merge(block.language, 1L, Long::sum);
+            for (Map.Entry<String, Long> e : perLanguage.entrySet()) Metrics.count("blocks_" + e.getKey(), e.getValue());
+        }
+
+        Map<String, List<CodeBlock>> duplicates;
+        // Python is scored from the line-based blocks, Java from the JavaParser blocks below
+        ScoreAggregator scores = new ScoreAggregator();
+        Set<CodeBlock> statements = Collections.newSetFromMap(new IdentityHashMap<>());
+        statements.addAll(statementBlocks);
+        try (Metrics.Phase phase = Metrics.phase("mark_duplicates")) {
+            List<CodeBlock> grouped = allBlocks;
+            if (!statementBlocks.isEmpty()) {
+                grouped = new ArrayList<>(allBlocks.size() + statementBlocks.size());
+                grouped.addAll(allBlocks);
+                grouped.addAll(statementBlocks);
+            }
+            duplicates = maxMemory > 0
+                    ? DuplicateDetection.markDuplicates(grouped, maxMemory, spillDir)
+                    : DuplicateDetection.markDuplicates(grouped);
+            Metrics.count("exact_groups", duplicates.size());
+            for (CodeBlock block : allBlocks) {
+                if ("python".equals(block.language)) scores.add(block);
             }
         }
 
-        Map<String, List<CodeBlock>> duplicates = DuplicateDetection.markDuplicates(allBlocks);
-
-        // Prepare report data
-        List<String> pythonReportLines = new ArrayList<>();
-        List<String> javaReportLines = new ArrayList<>();
-
-        if (!duplicates.isEmpty()) {
-            System.out.println("Duplicate blocks found:\n");
-            Set<CodeBlock> alreadyReported = new HashSet<>();
-            for (List<CodeBlock> group : duplicates.values()) {
-                for (CodeBlock block : group) {
-                    // Output every duplicate block in every group, even if it appears in multiple groups
-                    if (block.isDuplicate) {
-                        String entry = String.format(
-                            "Duplicate block in %s: %s (%d-%d)\n%s\n------\n",
-                            block.language, block.name, block.startLine, block.endLine, block.code.strip()
-                        );
-                        System.out.print(entry);
-                        if (block.language.equals("python")) {
-                            pythonReportLines.add(entry);
-                        } else if (block.language.equals("java")) {
-                            javaReportLines.add(entry);
+        // Machine-readable reports (--report jsonl / sarif), written group by group once grouping is done
+        List<ReportWriter> reports = new ArrayList<>();
+        try (Metrics.Phase phase = Metrics.phase("report")) {
+            for (String format : reportFormats) reports.add(ReportWriter.open(format, Paths.get("outputjava")));
+
+            // Write the Python report while the groups are printed; each report file is written exactly once
+            try (Writer pythonReport = bufferedWriter("outputjava/duplicates_python.txt")) {
+                if (!duplicates.isEmpty()) {
+                    System.out.println("Duplicate blocks found:\n");
+                    for (Map.Entry<String, List<CodeBlock>> group : duplicates.entrySet()) {
+                        for (ReportWriter r : reports) r.beginGroup(group.getKey(), "exact");
+                        for (CodeBlock block : group.getValue()) {
+                            // Output every duplicate block in every group, even if it appears in multiple groups
+                            if (!block.isDuplicate) continue;
+                            String entry = reportEntry(block);
+                            System.out.print(entry);
+                            if (block.language.equals("python") && !statements.contains(block)) pythonReport.write(entry);
+                            for (ReportWriter r : reports) {
+                                r.block(block.language, "block", block.name, block.source != null ? block.source.path : "",
+                                        block.startLine, block.endLine);
+                            }
                         }
+                        for (ReportWriter r : reports) r.endGroup();
                     }
+                } else {
+                    System.out.println("No duplicate blocks found.");
+                    pythonReport.write("No duplicate blocks found.\n");
                 }
             }
-        } else {
-            System.out.println("No duplicate blocks found.");
-            pythonReportLines.add("No duplicate blocks found.\n");
-            javaReportLines.add("No duplicate blocks found.\n");
         }
 
-        // Write to output files
-        try (PrintWriter out = new PrintWriter("outputjava/duplicates_python.txt")) {
-            for (String line : pythonReportLines) out.print(line);
+        // Near-duplicate (renamed / slightly edited) clones via MinHash + LSH
+        if (nearThreshold > 0) {
+            try (Metrics.Phase phase = Metrics.phase("near_duplicates")) {
+                List<NearDuplicateDetection.CloneGroup> nearGroups =
+                        new NearDuplicateDetection(nearThreshold).findNearDuplicates(allBlocks);
+                Metrics.count("near_groups", nearGroups.size());
+                System.out.printf("\n[Near-duplicate detection, Jaccard >= %.2f]\n\n", nearThreshold);
+                try (PrintWriter out = new PrintWriter("outputjava/near_duplicates.txt")) {
+                    for (NearDuplicateDetection.CloneGroup group : nearGroups) {
+                        String header = String.format("Near-duplicate group (similarity >= %.2f):\n", group.minSimilarity);
+                        System.out.print(header);
+                        out.print(header);
+                        for (CodeBlock block : group.blocks) {
+                            String entry = String.format("  -> %s %s (%d-%d)\n", block.language, block.name, block.startLine, block.endLine);
+                            System.out.print(entry);
+                            out.print(entry);
+                        }
+                        System.out.println("------");
+                        out.println("------");
+                    }
+                }
+            }
         }
-        try (PrintWriter out = new PrintWriter("outputjava/duplicates_java.txt")) {
-            for (String line : javaReportLines) out.print(line);
+
+        // Repeated token sequences across the whole corpus, independent of block boundaries
+        if (repeatMinTokens > 0) {
+            try (Metrics.Phase phase = Metrics.phase("repeats")) {
+                List<RepeatDetection.Repeat> repeats;
+                String failure = null;
+                try {
+                    repeats = new RepeatDetection(repeatMinTokens).findRepeats(sourceFiles);
+                } catch (IOException e) {
+                    repeats = Collections.emptyList();
+                    failure = "[Repeat detection failed: " + e.getMessage() + "]\n";
+                }
+                Metrics.count("repeat_groups", repeats.size());
+                System.out.printf("\n[Repeated sequences, >= %d tokens]\n\n", repeatMinTokens);
+                try (PrintWriter out = new PrintWriter("outputjava/repeats.txt")) {
+                    if (failure != null) {
+                        System.out.print(failure);
+                        out.print(failure);
+                    }
+                    for (RepeatDetection.Repeat repeat : repeats) {
+                        String header = String.format("Repeated sequence of %d tokens (%d occurrences):\n",
+                                repeat.length, repeat.occurrences.size());
+                        System.out.print(header);
+                        out.print(header);
+                        for (RepeatDetection.Occurrence occ : repeat.occurrences) {
+                            String entry = String.format("  -> %s [%d-%d]\n", occ.path, occ.startLine, occ.endLine);
+                            System.out.print(entry);
+                            out.print(entry);
+                        }
+                        System.out.println("------");
+                        out.println("------");
+                    }
+                }
+            }
         }
 
         // Run scan (no threads)
         runScan(allBlocks);
 
         // --- JavaParser-based duplicate detection integration ---
-        int javaParserDuplicateBlocks = 0;
-        int javaParserTotalBlocks = 0;
-        try {
+        List<JavaParserDuplicateDetection.Block> parsedBlocks = null;
+        List<List<JavaParserDuplicateDetection.Block>> groups = null;
+        try (Metrics.Phase phase = Metrics.phase("javaparser")) {
             System.out.println("\n[JavaParser-based duplicate detection]\n");
-            ProcessBuilder pb = new ProcessBuilder(
-                "java", "-cp", ".:lib/javaparser-core-3.25.4.jar:java", "JavaParserDuplicateDetection", "tests/EmployeeManager1.java"
-            );
-            pb.redirectErrorStream(true);
-            Process proc = pb.start();
-            BufferedReader reader = new BufferedReader(new InputStreamReader(proc.getInputStream()));
-            String line;
-            List<String> javaParserReportLines = new ArrayList<>();
-            Set<String> uniqueBlocks = new HashSet<>();
-            while ((line = reader.readLine()) != null) {
-                System.out.println(line);
-                if (line.startsWith("  -> ")) {
-                    javaParserReportLines.add(line + "\n");
-                    uniqueBlocks.add(line.trim());
-                }
-            }
-            proc.waitFor();
-            javaParserDuplicateBlocks = uniqueBlocks.size();
-            javaParserTotalBlocks = countJavaParserTotalBlocks("tests/EmployeeManager1.java");
-            // Overwrite outputjava/duplicates_java.txt with only JavaParser-based results
-            try (FileWriter fw = new FileWriter("outputjava/duplicates_java.txt", false)) {
-                fw.write("[JavaParser-based duplicate detection]\n");
-                Set<String> alreadyWritten = new HashSet<>();
-                for (String l : javaParserReportLines) {
-                    String trimmed = l.trim();
-                    if (alreadyWritten.contains(trimmed)) continue;
-                    alreadyWritten.add(trimmed);
-                    fw.write(l);
-                    // Parse block info:   -> Method name [start-end]
-                    if (trimmed.startsWith("-> ")) {
-                        String[] parts = trimmed.substring(3).split(" ");
-                        if (parts.length >= 3) {
-                            String type = parts[0];
-                            String name = parts[1];
-                            String lineRange = parts[2].replace("[","").replace("]","");
-                            String[] nums = lineRange.split("-");
-                            if (nums.length == 2) {
-                                int start = Integer.parseInt(nums[0]);
-                                int end = Integer.parseInt(nums[1]);
-                                // Read code from tests/EmployeeManager1.java
-                                List<String> fileLines = new ArrayList<>();
-                                try (BufferedReader br = new BufferedReader(new FileReader("tests/EmployeeManager1.java"))) {
-                                    String fileLine;
-                                    while ((fileLine = br.readLine()) != null) fileLines.add(fileLine);
-                                }
-                                StringBuilder codeBlock = new StringBuilder();
-                                for (int i = start - 1; i < end && i < fileLines.size(); i++) {
-                                    codeBlock.append(fileLines.get(i)).append("\n");
-                                }
-                                fw.write(String.format("Duplicate block in java: %s (%d-%d)\n%s------\n", name, start, end, codeBlock.toString()));
-                            }
+            // Runs in-process: blocks keep their source lines, so no file is re-read for the report
+            JavaParserDuplicateDetection.Options javaOptions =
+                    new JavaParserDuplicateDetection.Options(javaAnonymize, javaAllGranularities, javaMinNodes);
+            parsedBlocks = JavaParserDuplicateDetection.extractBlocks(javaFiles, index, javaOptions, cache);
+            groups = maxMemory > 0
+                    ? JavaParserDuplicateDetection.findDuplicates(parsedBlocks, maxMemory, spillDir)
+                    : JavaParserDuplicateDetection.findDuplicates(parsedBlocks);
+            Metrics.count("blocks_javaparser", parsedBlocks.size());
+            Metrics.count("javaparser_groups", groups.size());
+            JavaParserDuplicateDetection.printGroups(groups, System.out);
+        } catch (Exception e) {
+            System.out.println("[JavaParser detection failed: " + e + "]");
+        }
+        // outputjava/duplicates_java.txt holds the JavaParser-based results,
+        // or the line-based Java groups if JavaParser detection failed
+        try (Metrics.Phase phase = Metrics.phase("report");
+                Writer javaReport = bufferedWriter("outputjava/duplicates_java.txt")) {
+            if (groups != null) {
+                javaReport.write("[JavaParser-based duplicate detection]\n");
+                Set<JavaParserDuplicateDetection.Block> alreadyWritten = Collections.newSetFromMap(new IdentityHashMap<>());
+                for (List<JavaParserDuplicateDetection.Block> group : groups) {
+                    for (ReportWriter r : reports) r.beginGroup(group.get(0).fingerprint.toHex(), "javaparser");
+                    for (JavaParserDuplicateDetection.Block b : group) {
+                        for (ReportWriter r : reports) {
+                            r.block("java", b.type, b.name, b.source != null ? b.source.path : "", b.startLine, b.endLine);
                         }
+                        if (!alreadyWritten.add(b)) continue;
+                        javaReport.write(String.format("  -> %s %s [%d-%d]\n", b.type, b.name, b.startLine, b.endLine));
+                        javaReport.write(String.format("Duplicate block in java: %s (%d-%d)\n%s------\n", b.name, b.startLine, b.endLine, b.snippet()));
+                    }
+                    for (ReportWriter r : reports) r.endGroup();
+                }
+                for (JavaParserDuplicateDetection.Block b : parsedBlocks) scores.add(b, alreadyWritten.contains(b));
+            } else if (duplicates.isEmpty()) {
+                javaReport.write("No duplicate blocks found.\n");
+            } else {
+                for (List<CodeBlock> group : duplicates.values()) {
+                    for (CodeBlock block : group) {
+                        if (block.isDuplicate && block.language.equals("java")) javaReport.write(reportEntry(block));
                     }
                 }
             }
-        } catch (Exception e) {
-            System.out.println("[JavaParser detection failed: " + e + "]");
         }
+        for (ReportWriter r : reports) r.close();
 
         // Calculate and report duplication scores
-        int totalPythonBlocks = (int) allBlocks.stream().filter(b -> "python".equals(b.language)).count();
-        int duplicatePythonBlocks = (int) allBlocks.stream().filter(b -> b.isDuplicate && "python".equals(b.language)).count();
-        double pythonDuplicationScore = totalPythonBlocks > 0 ? (double) duplicatePythonBlocks / totalPythonBlocks : 0.0;
-        double javaDuplicationScore = javaParserTotalBlocks > 0 ? (double) javaParserDuplicateBlocks / javaParserTotalBlocks : 0.0;
+        ScoreAggregator.Score python = scores.language("python");
+        ScoreAggregator.Score java = scores.language("java");
         String scoreReport = String.format(
             "Python Duplication Score: %.2f (%d duplicate blocks / %d total blocks)\n" +
             "Java Duplication Score: %.2f (%d duplicate blocks / %d total blocks)\n",
-            pythonDuplicationScore, duplicatePythonBlocks, totalPythonBlocks,
-            javaDuplicationScore, javaParserDuplicateBlocks, javaParserTotalBlocks
+            python.blockScore(), python.duplicateBlocks, python.blocks,
+            java.blockScore(), java.duplicateBlocks, java.blocks
         );
         System.out.print(scoreReport);
         try (PrintWriter out = new PrintWriter("outputjava/duplication_score.txt")) {
             out.print(scoreReport);
         
         }
+        // Per file, package and directory, by blocks and by duplicated lines
+        try (Writer out = bufferedWriter("outputjava/duplication_heatmap.txt")) {
+            scores.writeHeatmap(out);
+        }
+
+        // Sorted index of the scored blocks, for merging with other shards (see ShardIndex)
+        if (shardIndexPath != null) {
+            try (Metrics.Phase phase = Metrics.phase("shard_index")) {
+                ShardIndex.Writer shard = new ShardIndex.Writer(
+                        new JavaParserDuplicateDetection.Options(javaAnonymize, javaAllGranularities, javaMinNodes),
+                        new PythonAst.Options(pythonAst, pythonMinTokens), shardRoot);
+                for (CodeBlock block : allBlocks) {
+                    if ("python".equals(block.language)) shard.add(block);
+                }
+                if (parsedBlocks != null) {
+                    for (JavaParserDuplicateDetection.Block b : parsedBlocks) shard.add(b);
+                }
+                shard.write(shardIndexPath);
+            }
+        }
+
+        if (index != null) {
+            try (Metrics.Phase phase = Metrics.phase("index_save")) {
+                index.save(indexPath);
+            }
+            System.out.printf("[Index] %d cached, %d re-processed -> %s\n", index.hits(), index.misses(), indexPath);
+        }
+
+        if (cache != null) {
+            Metrics.count("content_file_hits", cache.fileHits());
+            Metrics.count("content_block_hits", cache.blockHits());
+        }
+
+        // Per-phase timings and counters next to duplication_score.txt
+        Metrics.export(Paths.get("outputjava"));
 
         // Write all detected Python blocks to output/all_python_blocks.txt
         /* 
@@ -171,7 +379,7 @@ public class Main {
                 if ("python".equals(block.language)) {
                     String entry = String.format(
                         "Python block: %s (%d-%d)\n%s\n------\n",
-                        block.name, block.startLine, block.endLine, block.code.strip()
+                        block.name, block.startLine, block.endLine, block.code().strip()
                     );
                     out.print(entry);
                 }
@@ -179,20 +387,14 @@ public class Main {
         }*/
     }
 
-    public static int countJavaParserTotalBlocks(String filename) {
-        // Fallback: count all method and class headers in the file
-        int count = 0;
-        try (BufferedReader br = new BufferedReader(new FileReader(filename))) {
-            String line;
-            while ((line = br.readLine()) != null) {
-                if (line.matches(".*\\b(class|void|int|String|boolean|double|float|char)\\b.*\\(.*\\).*\\{.*") ||
-                    line.matches(".*\\bclass\\b.*\\{.*")) {
-                    count++;
-                }
-            }
-        } catch (Exception e) {
-            // ignore
-        }
-        return count;
+    // Text report entry of one duplicate block
+    static String reportEntry(CodeBlock block) {
+        return String.format("Duplicate block in %s: %s (%d-%d)\n%s\n------\n",
+                block.language, block.name, block.startLine, block.endLine, block.code().strip());
+    }
+
+    // Buffered UTF-8 writer for a report file
+    static Writer bufferedWriter(String path) throws IOException {
+        return Files.newBufferedWriter(Paths.get(path), java.nio.charset.StandardCharsets.UTF_8);
     }
 } 
\ No newline at end of file
@@ -0,0 +1,203 @@
+// Metrics.java
+// Lightweight instrumentation of the detection pipeline.
+// Records per-phase wall and CPU time, named counters (bytes/lines read, blocks per
+// language, groups found, ...) and the peak used heap; each phase is also emitted as a JFR event.
+// The heap peaks right before a collection, so the peak is taken from the heap in use before
+// every GC (reported by GC notifications), together with samples at phase boundaries.
+// Hot paths add up their counts locally and publish them once per batch.
+// The summary is exported as JSON and in the Prometheus text format.
+// Usage: try (Metrics.Phase p = Metrics.phase("extract")) { ... }   Metrics.count("bytes_read", n);
+// Place this file in the java/ directory.
+
+import java.io.*;
+import java.lang.management.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import javax.management.openmbean.CompositeData;
+
+public final class Metrics {
+    // JFR event committed at the end of every phase (enable with -XX:StartFlightRecording)
+    @jdk.jfr.Name("duplicatedetection.Phase")
+    @jdk.jfr.Label("Detection Phase")
+    @jdk.jfr.Category("Duplicate Detection")
+    static class PhaseEvent extends jdk.jfr.Event {
+        @jdk.jfr.Label("Phase")
+        String phase;
+
+        @jdk.jfr.Label("CPU Time")
+        @jdk.jfr.Timespan(jdk.jfr.Timespan.NANOSECONDS)
+        long cpuNanos;
+    }
+
+    // A running phase; closing it records its time
+    public static final class Phase implements AutoCloseable {
+        private final String name;
+        private final long wallStart = System.nanoTime();
+        private final long cpuStart = processCpuNanos();
+        private final PhaseEvent event = new PhaseEvent();
+
+        private Phase(String name) {
+            this.name = name;
+            sampleHeap();
+            event.begin();
+        }
+
+        @Override
+        public void close() {
+            long wall = System.nanoTime() - wallStart;
+            long cpu = processCpuNanos() - cpuStart;
+            long[] t = PHASES.computeIfAbsent(name, k -> new long[2]);
+            synchronized (t) {
+                t[0] += wall;
+                t[1] += cpu;
+            }
+            event.phase = name;
+            event.cpuNanos = cpu;
+            event.commit();
+            sampleHeap();
+        }
+    }
+
+    // Phase name -> {wall nanos, CPU nanos}, in first-use order
+    private static final Map<String, long[]> PHASES = Collections.synchronizedMap(new LinkedHashMap<>());
+    private static final ConcurrentMap<String, LongAdder> COUNTERS = new ConcurrentSkipListMap<>();
+    private static volatile long peakHeap;
+
+    static {
+        watchCollections();
+    }
+
+    private Metrics() {
+    }
+
+    // Start timing a phase; phases with the same name accumulate
+    public static Phase phase(String name) {
+        return new Phase(name);
+    }
+
+    // Add to a counter
+    public static void count(String name, long delta) {
+        COUNTERS.computeIfAbsent(name, k -> new LongAdder()).add(delta);
+    }
+
+    public static long counter(String name) {
+        LongAdder a = COUNTERS.get(name);
+        return a != null ? a.sum() : 0;
+    }
+
+    // Write metrics.json and metrics.prom into a directory
+    public static void export(Path dir) throws IOException {
+        sampleHeap();
+        writeJson(dir.resolve("metrics.json"));
+        writePrometheus(dir.resolve("metrics.prom"));
+    }
+
+    static void writeJson(Path file) throws IOException {
+        try (Writer out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            out.write("{\n  \"phases\": {");
+            boolean first = true;
+            for (Map.Entry<String, long[]> e : phases().entrySet()) {
+                out.write(first ? "\n" : ",\n");
+                first = false;
+                out.write(String.format(Locale.ROOT, "    \"%s\": {\"wall_ms\": %.3f, \"cpu_ms\": %.3f}",
+                        e.getKey(), e.getValue()[0] / 1e6, e.getValue()[1] / 1e6));
+            }
+            out.write("\n  },\n  \"counters\": {");
+            first = true;
+            for (Map.Entry<String, LongAdder> e : COUNTERS.entrySet()) {
+                out.write(first ? "\n" : ",\n");
+                first = false;
+                out.write(String.format(Locale.ROOT, "    \"%s\": %d", e.getKey(), e.getValue().sum()));
+            }
+            out.write("\n  },\n");
+            out.write(String.format(Locale.ROOT, "  \"normalize_mb_per_s\": %.2f,\n", normalizeMbPerSec()));
+            out.write(String.format(Locale.ROOT, "  \"peak_heap_bytes\": %d\n}\n", peakHeap));
+        }
+    }
+
+    static void writePrometheus(Path file) throws IOException {
+        try (Writer out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            Map<String, long[]> phases = phases();
+            out.write("# HELP dd_phase_wall_seconds Wall-clock time spent in each pipeline phase.\n");
+            out.write("# TYPE dd_phase_wall_seconds gauge\n");
+            for (Map.Entry<String, long[]> e : phases.entrySet()) {
+                out.write(String.format(Locale.ROOT, "dd_phase_wall_seconds{phase=\"%s\"} %.6f\n", e.getKey(), e.getValue()[0] / 1e9));
+            }
+            out.write("# HELP dd_phase_cpu_seconds Process CPU time spent in each pipeline phase (all threads).\n");
+            out.write("# TYPE dd_phase_cpu_seconds gauge\n");
+            for (Map.Entry<String, long[]> e : phases.entrySet()) {
+                out.write(String.format(Locale.ROOT, "dd_phase_cpu_seconds{phase=\"%s\"} %.6f\n", e.getKey(), e.getValue()[1] / 1e9));
+            }
+            for (Map.Entry<String, LongAdder> e : COUNTERS.entrySet()) {
+                String name = "dd_" + e.getKey().replaceAll("[^A-Za-z0-9_]", "_");
+                out.write("# TYPE " + name + " gauge\n");
+                out.write(name + " " + e.getValue().sum() + "\n");
+            }
+            out.write("# HELP dd_normalize_bytes_per_second Normalization throughput per thread.\n");
+            out.write("# TYPE dd_normalize_bytes_per_second gauge\n");
+            out.write(String.format(Locale.ROOT, "dd_normalize_bytes_per_second %.0f\n", normalizeMbPerSec() * 1024 * 1024));
+            out.write("# HELP dd_peak_heap_bytes Largest total used heap seen before a GC or at a phase boundary.\n");
+            out.write("# TYPE dd_peak_heap_bytes gauge\n");
+            out.write("dd_peak_heap_bytes " + peakHeap + "\n");
+        }
+    }
+
+    // Bytes normalized per second of time spent normalizing (per thread)
+    private static double normalizeMbPerSec() {
+        long nanos = counter("normalize_nanos");
+        return nanos > 0 ? counter("normalize_bytes") / (1024.0 * 1024.0) / (nanos / 1e9) : 0.0;
+    }
+
+    private static Map<String, long[]> phases() {
+        synchronized (PHASES) {
+            return new LinkedHashMap<>(PHASES);
+        }
+    }
+
+    // Total used heap right now; the pools' own peaks are not summed, since they are reached at different times
+    private static void sampleHeap() {
+        recordHeap(ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed());
+    }
+
+    private static synchronized void recordHeap(long used) {
+        if (used > peakHeap) peakHeap = used;
+    }
+
+    // Record the total heap in use just before each collection (all heap pools at one instant)
+    private static void watchCollections() {
+        Set<String> heapPools = new HashSet<>();
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) heapPools.add(pool.getName());
+        }
+        NotificationListener listener = (notification, handback) -> {
+            if (!com.sun.management.GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION.equals(notification.getType())) {
+                return;
+            }
+            com.sun.management.GcInfo gc = com.sun.management.GarbageCollectionNotificationInfo
+                    .from((CompositeData) notification.getUserData()).getGcInfo();
+            long used = 0;
+            for (Map.Entry<String, MemoryUsage> e : gc.getMemoryUsageBeforeGc().entrySet()) {
+                if (heapPools.contains(e.getKey())) used += e.getValue().getUsed();
+            }
+            recordHeap(used);
+        };
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            if (collector instanceof NotificationEmitter) {
+                ((NotificationEmitter) collector).addNotificationListener(listener, null, null);
+            }
+        }
+    }
+
+    private static long processCpuNanos() {
+        OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+        if (os instanceof com.sun.management.OperatingSystemMXBean) {
+            return ((com.sun.management.OperatingSystemMXBean) os).getProcessCpuTime();
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,186 @@
+// NearDuplicateDetection.java
+// Finds near-duplicate (Type-2/Type-3) code blocks with MinHash signatures and
+// locality-sensitive hashing. Each block is shingled over its normalized token
+// stream (interned ids, identifiers canonicalized so renamed copies still match),
+// reduced to a fixed-size signature, and only blocks that share an LSH band bucket
+// are compared, so detection runs in sub-quadratic time.
+// Groups are single-linkage: connected components of the pairs found at or above the
+// threshold. Two members of a group may be less similar to each other than that, if they
+// are linked through others; minSimilarity is the weakest of the links, not of all pairs.
+// Place this file in the java/ directory.
+
+import java.util.*;
+
+public class NearDuplicateDetection {
+    // A group of near-duplicate blocks with the lowest estimated similarity of the links joining it
+    public static class CloneGroup {
+        final List<CodeBlock> blocks = new ArrayList<>();
+        double minSimilarity = 1.0;
+    }
+
+    private final double threshold;  // Minimum estimated Jaccard similarity
+    private final int numHashes;     // MinHash signature length
+    private final int shingleSize;   // Tokens per shingle
+    private final int minTokens;     // Blocks with fewer tokens are ignored
+    private final int bands;
+    private final int rows;
+    private final long[] seeds;
+    private final TokenTable tokens;
+
+    public NearDuplicateDetection(double threshold) {
+        this(threshold, 128, 5, 12, true);
+    }
+
+    public NearDuplicateDetection(double threshold, int numHashes, int shingleSize, int minTokens,
+                                  boolean canonicalizeIdentifiers) {
+        this.threshold = threshold;
+        this.numHashes = numHashes;
+        this.shingleSize = shingleSize;
+        this.minTokens = Math.max(minTokens, shingleSize);
+        // Pick the band layout whose LSH threshold (1/b)^(1/r) is closest below the
+        // requested similarity, so candidate recall stays high
+        int bestRows = 1;
+        for (int r = 1; r <= numHashes; r++) {
+            if (numHashes % r != 0) continue;
+            double t = Math.pow(1.0 / (numHashes / r), 1.0 / r);
+            if (t <= threshold) bestRows = r;
+        }
+        this.rows = bestRows;
+        this.bands = numHashes / bestRows;
+        Random rnd = new Random(0x5eed);
+        seeds = new long[numHashes];
+        for (int i = 0; i < numHashes; i++) seeds[i] = rnd.nextLong();
+        tokens = new TokenTable(canonicalizeIdentifiers);
+    }
+
+    // Find near-duplicate groups among the given blocks
+    public List<CloneGroup> findNearDuplicates(List<CodeBlock> blocks) {
+        // 1. Signatures: memory is numHashes ints per block, independent of block size
+        List<CodeBlock> kept = new ArrayList<>();
+        List<int[]> signatures = new ArrayList<>();
+        for (CodeBlock block : blocks) {
+            int[] sig = signature(block);
+            if (sig == null) continue;
+            kept.add(block);
+            signatures.add(sig);
+        }
+
+        int n = kept.size();
+        int[] parent = new int[n];
+        for (int i = 0; i < n; i++) parent[i] = i;
+        double[] groupMin = new double[n];
+        Arrays.fill(groupMin, 1.0);
+
+        // 2. Blocks with identical signatures are joined directly; only one of them goes through
+        // LSH, so exact copies do not fill the band buckets
+        List<Integer> distinct = new ArrayList<>();
+        Map<Long, List<Integer>> bySignature = new HashMap<>();
+        for (int i = 0; i < n; i++) {
+            List<Integer> same = bySignature.computeIfAbsent(signatureKey(signatures.get(i)), k -> new ArrayList<>(1));
+            Integer match = null;
+            for (int j : same) {
+                if (Arrays.equals(signatures.get(j), signatures.get(i))) match = j;
+            }
+            if (match != null) {
+                union(parent, groupMin, match, i, 1.0);
+            } else {
+                same.add(i);
+                distinct.add(i);
+            }
+        }
+
+        // 3. LSH banding: each block is compared with every block already in the buckets it lands in
+        for (int b = 0; b < bands; b++) {
+            Map<Long, List<Integer>> buckets = new HashMap<>();
+            for (int i : distinct) {
+                List<Integer> bucket = buckets.computeIfAbsent(bandKey(signatures.get(i), b), k -> new ArrayList<>(1));
+                for (int j : bucket) {
+                    if (find(parent, i) == find(parent, j)) continue; // Already linked
+                    double sim = estimate(signatures.get(j), signatures.get(i));
+                    if (sim >= threshold) union(parent, groupMin, j, i, sim);
+                }
+                bucket.add(i);
+            }
+        }
+
+        // 4. Collect connected components with more than one block
+        int[] size = new int[n];
+        for (int i = 0; i < n; i++) size[find(parent, i)]++;
+        Map<Integer, CloneGroup> groups = new LinkedHashMap<>();
+        for (int i = 0; i < n; i++) {
+            int root = find(parent, i);
+            if (size[root] < 2) continue;
+            CloneGroup g = groups.computeIfAbsent(root, k -> new CloneGroup());
+            g.blocks.add(kept.get(i));
+            g.minSimilarity = groupMin[root];
+        }
+        return new ArrayList<>(groups.values());
+    }
+
+    // MinHash signature of a block's token shingles, or null if the block is too small
+    int[] signature(CodeBlock block) {
+        int[] ids = tokens.tokenize(block).tokens;
+        if (ids.length < minTokens) return null;
+        int[] sig = new int[numHashes];
+        Arrays.fill(sig, Integer.MAX_VALUE);
+        for (int i = 0; i + shingleSize <= ids.length; i++) addShingle(sig, shingleHash(ids, i));
+        return sig;
+    }
+
+    private long shingleHash(int[] ids, int from) {
+        long h = 0x9e3779b97f4a7c15L;
+        for (int k = from; k < from + shingleSize; k++) h = (h ^ ids[k]) * 0x100000001b3L;
+        return h;
+    }
+
+    private void addShingle(int[] sig, long shingle) {
+        for (int i = 0; i < numHashes; i++) {
+            int v = (int) (mix(shingle ^ seeds[i]) >>> 33);
+            if (v < sig[i]) sig[i] = v;
+        }
+    }
+
+    private long bandKey(int[] sig, int band) {
+        long h = band;
+        for (int r = band * rows; r < (band + 1) * rows; r++) h = h * 0x9e3779b97f4a7c15L + sig[r];
+        return mix(h);
+    }
+
+    private static long signatureKey(int[] sig) {
+        long h = 0;
+        for (int v : sig) h = h * 0x9e3779b97f4a7c15L + v;
+        return mix(h);
+    }
+
+    // Fraction of matching signature positions estimates the Jaccard similarity
+    private double estimate(int[] a, int[] b) {
+        int same = 0;
+        for (int i = 0; i < numHashes; i++) if (a[i] == b[i]) same++;
+        return (double) same / numHashes;
+    }
+
+    private static int find(int[] parent, int i) {
+        while (parent[i] != i) {
+            parent[i] = parent[parent[i]];
+            i = parent[i];
+        }
+        return i;
+    }
+
+    private static void union(int[] parent, double[] groupMin, int a, int b, double sim) {
+        int ra = find(parent, a);
+        int rb = find(parent, b);
+        double min = Math.min(sim, Math.min(groupMin[ra], groupMin[rb]));
+        if (ra != rb) parent[rb] = ra;
+        groupMin[ra] = min;
+    }
+
+    private static long mix(long k) {
+        k ^= k >>> 33;
+        k *= 0xff51afd7ed558ccdL;
+        k ^= k >>> 33;
+        k *= 0xc4ceb9fe1a85ec53L;
+        k ^= k >>> 33;
+        return k;
+    }
+}
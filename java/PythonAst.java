@@ -0,0 +1,238 @@
+// PythonAst.java
+// Lightweight statement-level AST for Python, parsed from PythonTokenizer tokens, with
+// Merkle-style structural hashes computed bottom-up. A compound statement (def, class,
+// if/elif/else, for, while, try/except/finally, with, match/case) is its header plus a
+// suite of statements; every other logical line is a simple statement whose hash covers
+// its tokens. Indentation is part of the structure (INDENT/DEDENT), and string literals
+// and comments are told apart by the tokenizer, unlike text normalization.
+// Each clause (elif, else, except, ...) is its own statement, as in PythonBlocks.
+// Place this file in the java/ directory.
+
+import java.util.*;
+
+public final class PythonAst {
+    private static final Set<String> COMPOUND = new HashSet<>(Arrays.asList(
+            "def", "class", "if", "elif", "else", "for", "while", "try", "except", "finally", "with"));
+    private static final Set<String> SOFT_COMPOUND = new HashSet<>(Arrays.asList("match", "case"));
+
+    private static final long P1 = 0x9e3779b97f4a7c15L;
+    private static final long P2 = 0xc2b2ae3d27d4eb4fL;
+
+    // How Python blocks are fingerprinted (Main --python-ast / --python-min-tokens). Text and
+    // structural fingerprints of the same code differ, so shard indexes record these options.
+    public static class Options {
+        static final Options DEFAULT = new Options(false, 0);
+
+        final boolean structural; // AST fingerprints and statement blocks instead of normalized text
+        final int minTokens;      // Smallest statement block, only used when structural
+
+        public Options(boolean structural, int minTokens) {
+            this.structural = structural;
+            this.minTokens = minTokens;
+        }
+
+        // Options that yield the same fingerprints are equal; minTokens only matters when structural
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Options)) return false;
+            Options other = (Options) obj;
+            return structural == other.structural && (!structural || minTokens == other.minTokens);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(structural, structural ? minTokens : 0);
+        }
+
+        // The command-line flags of Main that select these options
+        @Override
+        public String toString() {
+            return structural ? "--python-ast --python-min-tokens " + minTokens : "(no --python-ast)";
+        }
+    }
+
+    // One statement; module and suites are statements with children only
+    public static class Node {
+        final String kind;     // Header keyword ("def", "if", ...), "stmt" or "module"
+        final int startLine;
+        int endLine;
+        int tokens;            // Tokens in the whole subtree
+        Fingerprint hash;
+        final List<Node> children = new ArrayList<>();
+
+        Node(String kind, int startLine) {
+            this.kind = kind;
+            this.startLine = startLine;
+            this.endLine = startLine;
+        }
+    }
+
+    private final PythonTokenizer t;
+    Node root;
+    private final List<Node> statements = new ArrayList<>(); // All statements, in source order
+    private int i;
+
+    private PythonAst(PythonTokenizer t) {
+        this.t = t;
+    }
+
+    // Parse a whole file; returns the module node
+    public static PythonAst parse(CharSequence text) {
+        PythonAst ast = new PythonAst(PythonTokenizer.tokenize(text));
+        ast.root = ast.parseModule();
+        return ast;
+    }
+
+    // Every statement (simple and compound), in source order
+    public List<Node> statements() {
+        return statements;
+    }
+
+    private Node parseModule() {
+        Node module = new Node("module", 1);
+        while (t.kind[i] != PythonTokenizer.END) {
+            if (t.kind[i] == PythonTokenizer.INDENT || t.kind[i] == PythonTokenizer.DEDENT
+                    || t.kind[i] == PythonTokenizer.NEWLINE) {
+                i++; // Stray indentation (e.g. a file that starts indented)
+                continue;
+            }
+            module.children.add(parseStatement());
+        }
+        finish(module, 0, 0);
+        return module;
+    }
+
+    private Node parseStatement() {
+        int first = i;
+        int keyword = t.is(i, "async") && t.kind[i + 1] == PythonTokenizer.NAME ? i + 1 : i;
+        String word = t.kind[keyword] == PythonTokenizer.NAME ? t.text(keyword) : null;
+        int colon = word != null && (COMPOUND.contains(word) || SOFT_COMPOUND.contains(word)) ? headerColon(keyword) : -1;
+        if (colon < 0 || (SOFT_COMPOUND.contains(word) && t.kind[colon + 1] != PythonTokenizer.NEWLINE)) {
+            return parseSimple();
+        }
+
+        Node node = new Node(word, t.line[first]);
+        statements.add(node);
+        i = colon + 1;
+        if (t.kind[i] == PythonTokenizer.NEWLINE) {
+            i++;
+            if (t.kind[i] == PythonTokenizer.INDENT) {
+                i++;
+                while (t.kind[i] != PythonTokenizer.DEDENT && t.kind[i] != PythonTokenizer.END) {
+                    if (t.kind[i] == PythonTokenizer.INDENT || t.kind[i] == PythonTokenizer.NEWLINE) {
+                        i++;
+                        continue;
+                    }
+                    node.children.add(parseStatement());
+                }
+                if (t.kind[i] == PythonTokenizer.DEDENT) i++;
+            }
+        } else {
+            // Suite on the header line: "if x: return y"
+            node.children.add(parseSimple());
+        }
+        finish(node, first, colon + 1);
+        return node;
+    }
+
+    // A logical line up to and including its NEWLINE
+    private Node parseSimple() {
+        int first = i;
+        while (t.kind[i] != PythonTokenizer.NEWLINE && t.kind[i] != PythonTokenizer.END) i++;
+        int stop = i;
+        if (t.kind[i] == PythonTokenizer.NEWLINE) i++;
+        Node node = new Node("stmt", t.line[first]);
+        statements.add(node);
+        finish(node, first, stop);
+        return node;
+    }
+
+    // The header's colon (outside brackets) on the current logical line, or -1
+    private int headerColon(int from) {
+        int depth = 0;
+        for (int k = from; t.kind[k] != PythonTokenizer.NEWLINE && t.kind[k] != PythonTokenizer.END; k++) {
+            if (t.kind[k] != PythonTokenizer.OP) continue;
+            char c = t.text.charAt(t.start[k]);
+            if (c == '(' || c == '[' || c == '{') depth++;
+            else if (c == ')' || c == ']' || c == '}') depth--;
+            else if (c == ':' && depth == 0 && t.end[k] - t.start[k] == 1) return k;
+        }
+        return -1;
+    }
+
+    // Hash a node from its own tokens [from, to) and its children's hashes
+    private void finish(Node node, int from, int to) {
+        long a = P1 ^ node.kind.hashCode();
+        long b = P2 ^ node.kind.hashCode();
+        for (int k = from; k < to; k++) {
+            a = step(a, t.kind[k]);
+            b = step2(b, t.kind[k]);
+            for (int c = t.start[k]; c < t.end[k]; c++) {
+                a = step(a, t.text.charAt(c));
+                b = step2(b, t.text.charAt(c));
+            }
+            a = step(a, t.end[k] - t.start[k]);
+            b = step2(b, t.end[k] - t.start[k]);
+        }
+        int tokens = to - from;
+        int end = to > from ? t.line[to - 1] : node.startLine;
+        for (Node child : node.children) {
+            a = step(a, child.hash.lo);
+            b = step2(b, child.hash.hi);
+            tokens += child.tokens;
+            end = Math.max(end, child.endLine);
+        }
+        a = step(a, node.children.size());
+        b = step2(b, node.children.size());
+        node.hash = new Fingerprint(mix(a), mix(b));
+        node.tokens = tokens;
+        node.endLine = end;
+    }
+
+    private static long step(long h, long v) {
+        return Long.rotateLeft((h ^ v) * P1, 31) * P2;
+    }
+
+    private static long step2(long h, long v) {
+        return Long.rotateLeft((h + v) * P2, 27) * P1 + 0x52dce729;
+    }
+
+    // MurmurHash3 fmix64 finalizer
+    private static long mix(long k) {
+        k ^= k >>> 33;
+        k *= 0xff51afd7ed558ccdL;
+        k ^= k >>> 33;
+        k *= 0xc4ceb9fe1a85ec53L;
+        k ^= k >>> 33;
+        return k;
+    }
+
+    // Give the line-based blocks of one file structural fingerprints, and add a block for
+    // every other statement with at least minTokens tokens (statement/suite granularity).
+    // Returns the added blocks; blocks without a matching statement keep their text fingerprint.
+    public static List<CodeBlock> fingerprintBlocks(SourceFile source, List<CodeBlock> blocks, int minTokens) {
+        PythonAst ast = parse(source.text);
+        Map<Integer, Node> byLine = new HashMap<>();
+        for (Node node : ast.statements) {
+            if (!node.kind.equals("stmt")) byLine.putIfAbsent(node.startLine, node);
+        }
+        Set<Integer> covered = new HashSet<>();
+        for (CodeBlock block : blocks) {
+            Node node = byLine.get(block.startLine);
+            if (node == null) continue;
+            block.fingerprint = node.hash;
+            covered.add(block.startLine);
+        }
+        List<CodeBlock> added = new ArrayList<>();
+        for (Node node : ast.statements) {
+            if (node.tokens < minTokens || covered.contains(node.startLine)) continue;
+            String name = node.kind.equals("stmt") ? "Statement"
+                    : Character.toUpperCase(node.kind.charAt(0)) + node.kind.substring(1);
+            CodeBlock block = new CodeBlock(name, node.startLine, node.endLine, "python",
+                    source, source.lineStart(node.startLine), source.lineEnd(node.endLine));
+            block.fingerprint = node.hash;
+            added.add(block);
+        }
+        return added;
+    }
+}
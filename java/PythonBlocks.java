@@ -3,19 +3,25 @@
 // Description: Extracts code blocks (functions, classes, loops, conditionals) from Python files for analysis.
 
 import java.io.*;
+import java.nio.file.*;
 import java.util.*;
-import java.util.regex.*;
 
-// Represents a code block (function, class, loop, or conditional)
+// Represents a code block (function, class, loop, or conditional).
+// A block refers to a range of a shared SourceFile; its text is only materialized on demand.
 class CodeBlock {
     String name;         // Name of the block (function/class name, or type for loops/conditionals)
     int startLine;       // Starting line number (1-indexed)
     int endLine;         // Ending line number (1-indexed, exclusive)
-    String code;         // The code content of the block
     String language;     // Language of the code block ("python")
     boolean isDuplicate = false; // Flag for duplicate detection (not used here)
+    Fingerprint fingerprint;     // Cached fingerprint of the normalized code (set by DuplicateDetection)
+    CodeBlock parent;    // Enclosing block (null for top-level blocks)
+    SourceFile source;   // Shared source buffer (null for blocks built from a string)
+    int startOffset;     // Start of the block in source.text
+    int endOffset;       // End of the block in source.text (exclusive)
+    private final String code; // Only set for blocks built from a string
 
-    // Constructor to initialize a code block
+    // Constructor to initialize a code block from its text
     public CodeBlock(String name, int startLine, int endLine, String code, String language) {
         this.name = name;
         this.startLine = startLine;
@@ -24,97 +30,202 @@ class CodeBlock {
         this.language = language;
     }
 
+    // Constructor for a block that is a range of a source file
+    public CodeBlock(String name, int startLine, int endLine, String language, SourceFile source, int startOffset, int endOffset) {
+        this.name = name;
+        this.startLine = startLine;
+        this.endLine = endLine;
+        this.code = null;
+        this.language = language;
+        this.source = source;
+        this.startOffset = startOffset;
+        this.endOffset = endOffset;
+    }
+
+    // The code content of the block (materialized from the source buffer, not cached)
+    public String code() {
+        return code != null ? code : source.text(startOffset, endOffset);
+    }
+
+    // The code content as a view over the source buffer (no copy)
+    public CharSequence codeView() {
+        return code != null ? code : source.view(startOffset, endOffset);
+    }
+
     // Print the block if it's marked as duplicate (utility method)
     public void scan() {
         if (isDuplicate) {
             System.out.printf("Duplicate block in %s: %s (%d-%d)\n", language, name, startLine, endLine);
-            System.out.println(code.strip());
+            System.out.println(code().strip());
             System.out.println("------");
         }
     }
 }
 
 public class PythonBlocks {
-    // Regular expressions to match Python block headers
-    private static final Pattern FUNC_PATTERN = Pattern.compile("^\s*def\\s+(\\w+)\\s*\\("); // function
-    private static final Pattern CLASS_PATTERN = Pattern.compile("^\s*class\\s+(\\w+)\\s*\\(?"); // class
-    private static final Pattern FOR_PATTERN = Pattern.compile("^\s*for\\s+.*:"); // for loop
-    private static final Pattern WHILE_PATTERN = Pattern.compile("^\s*while\\s+.*:"); // while loop
-    private static final Pattern IF_PATTERN = Pattern.compile("^\s*if\\s+.*:"); // if statement
-    private static final Pattern ELIF_PATTERN = Pattern.compile("^\s*elif\\s+.*:"); // elif statement
-    private static final Pattern ELSE_PATTERN = Pattern.compile("^\s*else\\s*:"); // else statement
-
     // Extracts all code blocks from a Python file
     public static List<CodeBlock> extractPythonBlocks(String filename) throws IOException {
-        List<String> lines = new ArrayList<>();
-        // Read all lines from the file
-        try (BufferedReader br = new BufferedReader(new FileReader(filename))) {
-            String line;
-            while ((line = br.readLine()) != null) {
-                lines.add(line);
-            }
-        }
+        return extractPythonBlocks(SourceFile.read(Paths.get(filename)));
+    }
+
+    // Extracts all code blocks (including nested ones) from a Python file that has already been read.
+    // Single pass over the source with an indentation stack: each logical line closes every open
+    // block indented at least as deep, and a block header opens a new one. Line continuations,
+    // brackets spanning lines, comments and (triple-quoted) strings are handled by the scanner.
+    public static List<CodeBlock> extractPythonBlocks(SourceFile source) {
+        CharSequence text = source.text;
+        int n = text.length();
         List<CodeBlock> blocks = new ArrayList<>();
-        // Iterate through each line to find block headers
-        for (int i = 0; i < lines.size(); i++) {
-            String line = lines.get(i);
-            Matcher mFunc = FUNC_PATTERN.matcher(line);
-            Matcher mClass = CLASS_PATTERN.matcher(line);
-            Matcher mFor = FOR_PATTERN.matcher(line);
-            Matcher mWhile = WHILE_PATTERN.matcher(line);
-            Matcher mIf = IF_PATTERN.matcher(line);
-            Matcher mElif = ELIF_PATTERN.matcher(line);
-            Matcher mElse = ELSE_PATTERN.matcher(line);
+        CodeBlock[] stack = new CodeBlock[16];  // Open blocks, innermost last
+        int[] indents = new int[16];            // Header indentation of each open block
+        int depth = 0;
+        int pos = 0;
+        int line = 1;
+        int lastCodeLine = 0;                   // Last line of the latest logical line
+        while (pos < n) {
+            // Start of a physical line that starts a logical line: measure indentation
+            int lineBegin = pos;
+            pos = skipSpaces(text, pos);
+            int indent = pos - lineBegin;
+            if (pos >= n) break;
+            char c = text.charAt(pos);
+            if (c == '\n' || c == '\r' || c == '#') {
+                // Blank or comment-only line: does not affect indentation
+                while (pos < n && text.charAt(pos) != '\n') pos++;
+                pos++;
+                line++;
+                continue;
+            }
+            int startLine = line;
+
+            // Close every block this line is not nested in; the block ends at its last code line,
+            // so blank lines and comments between blocks belong to neither
+            while (depth > 0 && indents[depth - 1] >= indent) {
+                closeBlock(stack[--depth], lastCodeLine, source);
+            }
+
+            // First word of the logical line decides whether it is a block header
+            int wordStart = pos;
+            int wordEnd = skipWord(text, pos);
+            if (is(text, wordStart, wordEnd, "async")) {
+                wordStart = skipSpaces(text, wordEnd);
+                wordEnd = skipWord(text, wordStart);
+            }
             String name = null;
-            // Determine the type of block and extract its name/type
-            if (mFunc.find()) {
-                name = mFunc.group(1); // function name
-            } else if (mClass.find()) {
-                name = mClass.group(1); // class name
-            } else if (mFor.find()) {
+            boolean needsColon = true;
+            if (is(text, wordStart, wordEnd, "def") || is(text, wordStart, wordEnd, "class")) {
+                int nameStart = skipSpaces(text, wordEnd);
+                int nameEnd = skipWord(text, nameStart);
+                if (nameEnd > nameStart && nameStart > wordEnd) {
+                    name = text.subSequence(nameStart, nameEnd).toString(); // function / class name
+                    needsColon = false;
+                }
+            } else if (is(text, wordStart, wordEnd, "for")) {
                 name = "For";
-            } else if (mWhile.find()) {
+            } else if (is(text, wordStart, wordEnd, "while")) {
                 name = "While";
-            } else if (mIf.find()) {
+            } else if (is(text, wordStart, wordEnd, "if")) {
                 name = "If";
-            } else if (mElif.find()) {
+            } else if (is(text, wordStart, wordEnd, "elif")) {
                 name = "Elif";
-            } else if (mElse.find()) {
+            } else if (is(text, wordStart, wordEnd, "else")) {
                 name = "Else";
             }
-            // If a block header is found, extract the block
-            if (name != null) {
-                int start = i;
-                int end = findBlockEnd(start, lines); // Find where the block ends
-                StringBuilder blockCode = new StringBuilder();
-                for (int j = start; j < end; j++) {
-                    blockCode.append(lines.get(j)).append("\n");
+
+            // Scan to the end of the logical line
+            int brackets = 0;
+            boolean colon = false;
+            pos = wordEnd;
+            while (pos < n) {
+                c = text.charAt(pos);
+                if (c == '\n') {
+                    line++;
+                    pos++;
+                    if (brackets == 0) break;
+                } else if (c == '\\' && pos + 1 < n && (text.charAt(pos + 1) == '\n' || text.charAt(pos + 1) == '\r')) {
+                    // Explicit line continuation
+                    pos = text.charAt(pos + 1) == '\r' && pos + 2 < n && text.charAt(pos + 2) == '\n' ? pos + 3 : pos + 2;
+                    line++;
+                } else if (c == '#') {
+                    while (pos < n && text.charAt(pos) != '\n') pos++;
+                } else if (c == '"' || c == '\'') {
+                    int before = pos;
+                    pos = skipString(text, pos);
+                    for (int k = before; k < pos; k++) if (text.charAt(k) == '\n') line++;
+                } else {
+                    if (c == '(' || c == '[' || c == '{') brackets++;
+                    else if ((c == ')' || c == ']' || c == '}') && brackets > 0) brackets--;
+                    else if (c == ':' && brackets == 0) colon = true;
+                    pos++;
                 }
-                // Add the block to the list
-                blocks.add(new CodeBlock(name, start + 1, end, blockCode.toString(), "python"));
-                i = end - 1; // Skip to the end of the block
+            }
+            lastCodeLine = text.charAt(pos - 1) == '\n' ? line - 1 : line;
+
+            // Open a block for a header
+            if (name != null && (colon || !needsColon)) {
+                CodeBlock block = new CodeBlock(name, startLine, startLine, "python",
+                        source, source.lineStart(startLine), source.lineEnd(startLine));
+                if (depth > 0) block.parent = stack[depth - 1];
+                blocks.add(block);
+                if (depth == stack.length) {
+                    stack = Arrays.copyOf(stack, depth * 2);
+                    indents = Arrays.copyOf(indents, depth * 2);
+                }
+                stack[depth] = block;
+                indents[depth] = indent;
+                depth++;
             }
         }
+        // Blocks still open run to the last code line of the file
+        while (depth > 0) closeBlock(stack[--depth], lastCodeLine, source);
         return blocks;
     }
 
-    // Finds the end of a block by comparing indentation
-    private static int findBlockEnd(int start, List<String> lines) {
-        int baseIndent = getIndent(lines.get(start)); // Indentation of the block header
-        for (int i = start + 1; i < lines.size(); i++) {
-            String line = lines.get(i);
-            if (line.trim().isEmpty()) continue; // Skip empty lines
-            int currIndent = getIndent(line);
-            if (currIndent <= baseIndent) return i; // Block ends when indentation decreases
+    // Sets the last line of a block (and the matching end offset)
+    private static void closeBlock(CodeBlock block, int endLine, SourceFile source) {
+        block.endLine = Math.max(endLine, block.startLine);
+        block.endOffset = source.lineEnd(block.endLine);
+    }
+
+    // Skips a string literal (single, double or triple quoted) starting at pos
+    private static int skipString(CharSequence text, int pos) {
+        int n = text.length();
+        char quote = text.charAt(pos);
+        boolean triple = pos + 2 < n && text.charAt(pos + 1) == quote && text.charAt(pos + 2) == quote;
+        pos += triple ? 3 : 1;
+        while (pos < n) {
+            char c = text.charAt(pos);
+            if (c == '\\' && pos + 1 < n) {
+                pos += 2;
+                continue;
+            }
+            if (c == quote) {
+                if (!triple) return pos + 1;
+                if (pos + 2 < n && text.charAt(pos + 1) == quote && text.charAt(pos + 2) == quote) return pos + 3;
+            }
+            if (c == '\n' && !triple) return pos; // Unterminated literal: stop at end of line
+            pos++;
         }
-        return lines.size(); // End of file
+        return pos;
+    }
+
+    private static int skipWord(CharSequence text, int pos) {
+        while (pos < text.length() && (Character.isLetterOrDigit(text.charAt(pos)) || text.charAt(pos) == '_')) pos++;
+        return pos;
+    }
+
+    private static int skipSpaces(CharSequence text, int pos) {
+        while (pos < text.length() && (text.charAt(pos) == ' ' || text.charAt(pos) == '\t' || text.charAt(pos) == '\f')) pos++;
+        return pos;
     }
 
-    // Returns the indentation (number of leading whitespace characters) of a line
-    private static int getIndent(String line) {
-        int count = 0;
-        while (count < line.length() && Character.isWhitespace(line.charAt(count))) count++;
-        return count;
+    // Compare text[start, end) with a keyword without allocating
+    private static boolean is(CharSequence text, int start, int end, String keyword) {
+        if (end - start != keyword.length()) return false;
+        for (int i = 0; i < keyword.length(); i++) {
+            if (text.charAt(start + i) != keyword.charAt(i)) return false;
+        }
+        return true;
     }
 
     // Example usage: java PythonBlocks <python_file.py>
@@ -127,7 +238,7 @@ public class PythonBlocks {
         List<CodeBlock> blocks = extractPythonBlocks(args[0]);
         for (CodeBlock block : blocks) {
             System.out.printf("Block: %s (%d-%d)\n", block.name, block.startLine, block.endLine);
-            System.out.println(block.code);
+            System.out.println(block.code());
             System.out.println("------");
         }
     }
@@ -0,0 +1,226 @@
+// PythonTokenizer.java
+// Hand-written tokenizer for Python source, following the rules of the Python lexer:
+// NAME, NUMBER, STRING, OP tokens plus NEWLINE at the end of each logical line and
+// INDENT/DEDENT tokens from an indentation stack. Comments and blank lines produce no
+// tokens; newlines inside brackets and after a backslash continue the logical line.
+// Tokens are stored in parallel int arrays of offsets into the text (no token objects).
+// Place this file in the java/ directory.
+
+import java.util.*;
+
+public final class PythonTokenizer {
+    static final int NAME = 0, NUMBER = 1, STRING = 2, OP = 3, NEWLINE = 4, INDENT = 5, DEDENT = 6, END = 7;
+
+    private static final String[] OPERATORS_3 = {"**=", "//=", ">>=", "<<=", "..."};
+    private static final String[] OPERATORS_2 = {
+        "**", "//", ">>", "<<", "<=", ">=", "==", "!=", "->", "+=", "-=", "*=", "/=", "%=", "&=", "|=", "^=", "@=", ":="
+    };
+
+    final CharSequence text;
+    int[] kind = new int[256];
+    int[] start = new int[256];
+    int[] end = new int[256];
+    int[] line = new int[256];
+    int count;
+
+    private PythonTokenizer(CharSequence text) {
+        this.text = text;
+    }
+
+    public static PythonTokenizer tokenize(CharSequence text) {
+        PythonTokenizer t = new PythonTokenizer(text);
+        t.run();
+        return t;
+    }
+
+    // Text of token i
+    public String text(int i) {
+        return text.subSequence(start[i], end[i]).toString();
+    }
+
+    // Does token i have exactly this text?
+    public boolean is(int i, String s) {
+        if (end[i] - start[i] != s.length()) return false;
+        for (int k = 0; k < s.length(); k++) {
+            if (text.charAt(start[i] + k) != s.charAt(k)) return false;
+        }
+        return true;
+    }
+
+    private void run() {
+        int n = text.length();
+        int[] indents = new int[16];
+        int depth = 1; // indents[0] = 0
+        int brackets = 0;
+        int ln = 1;
+        int pos = 0;
+        boolean lineStart = true;
+        while (pos < n) {
+            if (lineStart) {
+                lineStart = false;
+                if (brackets == 0) {
+                    // Measure the indentation of a new logical line
+                    int col = 0;
+                    while (pos < n) {
+                        char c = text.charAt(pos);
+                        if (c == ' ') col++;
+                        else if (c == '\t') col = (col / 8 + 1) * 8;
+                        else if (c == '\f') col = 0;
+                        else break;
+                        pos++;
+                    }
+                    if (pos >= n) break;
+                    char c = text.charAt(pos);
+                    if (c == '\n' || c == '\r' || c == '#') {
+                        // Blank or comment-only line
+                        while (pos < n && text.charAt(pos) != '\n') pos++;
+                        pos++;
+                        ln++;
+                        lineStart = true;
+                        continue;
+                    }
+                    if (col > indents[depth - 1]) {
+                        if (depth == indents.length) indents = Arrays.copyOf(indents, depth * 2);
+                        indents[depth++] = col;
+                        add(INDENT, pos, pos, ln);
+                    } else {
+                        while (depth > 1 && col < indents[depth - 1]) {
+                            depth--;
+                            add(DEDENT, pos, pos, ln);
+                        }
+                    }
+                }
+            }
+            char c = text.charAt(pos);
+            if (c == ' ' || c == '\t' || c == '\f' || c == '\r') {
+                pos++;
+            } else if (c == '\n') {
+                if (brackets == 0 && count > 0 && kind[count - 1] != NEWLINE
+                        && kind[count - 1] != INDENT && kind[count - 1] != DEDENT) {
+                    add(NEWLINE, pos, pos, ln);
+                }
+                pos++;
+                ln++;
+                lineStart = true;
+            } else if (c == '\\' && pos + 1 < n && (text.charAt(pos + 1) == '\n' || text.charAt(pos + 1) == '\r')) {
+                // Explicit line continuation
+                pos = text.charAt(pos + 1) == '\r' && pos + 2 < n && text.charAt(pos + 2) == '\n' ? pos + 3 : pos + 2;
+                ln++;
+            } else if (c == '#') {
+                while (pos < n && text.charAt(pos) != '\n') pos++;
+            } else if (c == '"' || c == '\'') {
+                int s = pos;
+                pos = skipString(pos);
+                add(STRING, s, pos, ln);
+                ln += newlines(s, pos);
+            } else if (Character.isLetter(c) || c == '_') {
+                int s = pos;
+                while (pos < n && (Character.isLetterOrDigit(text.charAt(pos)) || text.charAt(pos) == '_')) pos++;
+                if (pos < n && (text.charAt(pos) == '"' || text.charAt(pos) == '\'') && isStringPrefix(s, pos)) {
+                    pos = skipString(pos);
+                    add(STRING, s, pos, ln);
+                    ln += newlines(s, pos);
+                } else {
+                    add(NAME, s, pos, ln);
+                }
+            } else if (Character.isDigit(c) || (c == '.' && pos + 1 < n && Character.isDigit(text.charAt(pos + 1)))) {
+                int s = pos;
+                while (pos < n) {
+                    char d = text.charAt(pos);
+                    if ((d == '+' || d == '-') && (text.charAt(pos - 1) == 'e' || text.charAt(pos - 1) == 'E')
+                            && !isHex(s)) {
+                        pos++;
+                    } else if (Character.isLetterOrDigit(d) || d == '_' || d == '.') {
+                        pos++;
+                    } else {
+                        break;
+                    }
+                }
+                add(NUMBER, s, pos, ln);
+            } else {
+                int len = operatorLength(pos);
+                if (c == '(' || c == '[' || c == '{') brackets++;
+                else if ((c == ')' || c == ']' || c == '}') && brackets > 0) brackets--;
+                add(OP, pos, pos + len, ln);
+                pos += len;
+            }
+        }
+        if (count > 0 && kind[count - 1] != NEWLINE && kind[count - 1] != DEDENT) add(NEWLINE, n, n, ln);
+        while (depth > 1) {
+            depth--;
+            add(DEDENT, n, n, ln);
+        }
+        add(END, n, n, ln);
+    }
+
+    private void add(int k, int s, int e, int ln) {
+        if (count == kind.length) {
+            int size = count * 2;
+            kind = Arrays.copyOf(kind, size);
+            start = Arrays.copyOf(start, size);
+            end = Arrays.copyOf(end, size);
+            line = Arrays.copyOf(line, size);
+        }
+        kind[count] = k;
+        start[count] = s;
+        end[count] = e;
+        line[count] = ln;
+        count++;
+    }
+
+    // r, b, u, f and their two-letter combinations, in any case
+    private boolean isStringPrefix(int s, int e) {
+        if (e - s > 2) return false;
+        for (int i = s; i < e; i++) {
+            char c = Character.toLowerCase(text.charAt(i));
+            if (c != 'r' && c != 'b' && c != 'u' && c != 'f') return false;
+        }
+        return true;
+    }
+
+    private boolean isHex(int s) {
+        return s + 1 < text.length() && text.charAt(s) == '0' && (text.charAt(s + 1) == 'x' || text.charAt(s + 1) == 'X');
+    }
+
+    private int operatorLength(int pos) {
+        for (String op : OPERATORS_3) if (matches(pos, op)) return 3;
+        for (String op : OPERATORS_2) if (matches(pos, op)) return 2;
+        return 1;
+    }
+
+    private boolean matches(int pos, String op) {
+        if (pos + op.length() > text.length()) return false;
+        for (int k = 0; k < op.length(); k++) {
+            if (text.charAt(pos + k) != op.charAt(k)) return false;
+        }
+        return true;
+    }
+
+    // End of the (single, double or triple quoted) string literal starting at pos
+    private int skipString(int pos) {
+        int n = text.length();
+        char quote = text.charAt(pos);
+        boolean triple = pos + 2 < n && text.charAt(pos + 1) == quote && text.charAt(pos + 2) == quote;
+        pos += triple ? 3 : 1;
+        while (pos < n) {
+            char c = text.charAt(pos);
+            if (c == '\\' && pos + 1 < n) {
+                pos += 2;
+                continue;
+            }
+            if (c == quote) {
+                if (!triple) return pos + 1;
+                if (pos + 2 < n && text.charAt(pos + 1) == quote && text.charAt(pos + 2) == quote) return pos + 3;
+            }
+            if (c == '\n' && !triple) return pos; // Unterminated literal: stop at end of line
+            pos++;
+        }
+        return pos;
+    }
+
+    private int newlines(int s, int e) {
+        int lines = 0;
+        for (int i = s; i < e; i++) if (text.charAt(i) == '\n') lines++;
+        return lines;
+    }
+}
@@ -0,0 +1,223 @@
+// RepeatDetection.java
+// Corpus-wide detection of repeated token sequences that need not line up with blocks.
+// The token streams of all files are concatenated (each file ends with its own unique
+// sentinel, so no repeat crosses a file boundary), a suffix array is built by prefix
+// doubling with radix sort (O(n log n)), the LCP array by Kasai's algorithm (O(n)),
+// and every maximal repeat of at least minTokens tokens is reported with file/line ranges.
+// Files are tokenized twice: once to count the tokens, then again into arrays allocated
+// once at their exact size. At the peak (the last sorting round) six int arrays of one
+// entry per token are live: text, lines, sa, rank, tmp and the counting-sort buckets, so
+// 24 bytes per token, plus the token table and the source and tokens of one file.
+// A corpus over the heap budget is rejected with an IOException before anything is
+// allocated, rather than scanned in part: a repeat can join any two files, so a partial
+// result would silently miss some.
+// Place this file in the java/ directory.
+
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+
+public class RepeatDetection {
+    private static final int BYTES_PER_TOKEN = 24; // text, lines, sa, rank, tmp and buckets (one int each) at the peak
+
+    // One place where a repeated sequence occurs
+    public static class Occurrence {
+        final String path;
+        final int startLine;
+        final int endLine;
+
+        Occurrence(String path, int startLine, int endLine) {
+            this.path = path;
+            this.startLine = startLine;
+            this.endLine = endLine;
+        }
+    }
+
+    // A maximal repeated token sequence and all of its occurrences
+    public static class Repeat {
+        final int length; // In tokens
+        final List<Occurrence> occurrences = new ArrayList<>();
+
+        Repeat(int length) {
+            this.length = length;
+        }
+    }
+
+    private final int minTokens;
+    private final long heapBudget;
+
+    public RepeatDetection(int minTokens) {
+        this(minTokens, (long) (Runtime.getRuntime().maxMemory() * 0.6));
+    }
+
+    public RepeatDetection(int minTokens, long heapBudget) {
+        this.minTokens = Math.max(1, minTokens);
+        this.heapBudget = heapBudget;
+    }
+
+    // Find all maximal repeats of at least minTokens tokens across the given files, longest first.
+    // Throws IOException if the files have more tokens than the heap budget allows.
+    public List<Repeat> findRepeats(List<Path> files) throws IOException {
+        // 1. Count the tokens (plus one sentinel per file) and check the budget before allocating
+        TokenTable table = new TokenTable(false);
+        List<Path> sources = new ArrayList<>();
+        long total = 0;
+        long maxTokens = Math.min(heapBudget / BYTES_PER_TOKEN, Integer.MAX_VALUE - 8); // Java array limit
+        for (Path file : files) {
+            String name = file.toString();
+            if (!name.endsWith(".java") && !name.endsWith(".py")) continue;
+            total += tokenize(table, file).length() + 1;
+            if (total > maxTokens) {
+                throw new IOException(String.format(
+                        "more than %d tokens at %s, over the heap budget of %d MB (%d bytes per token); "
+                        + "raise -Xmx or scan fewer files", maxTokens, name, heapBudget >> 20, BYTES_PER_TOKEN));
+            }
+            sources.add(file);
+        }
+        if (total == 0) return new ArrayList<>();
+
+        // 2. Concatenate the token streams into exactly sized arrays; sentinels are stored as -(file + 1) for now
+        int n = 0;
+        int[] text = new int[(int) total];
+        int[] lines = new int[(int) total];
+        List<String> paths = new ArrayList<>(sources.size());
+        int[] fileStarts = new int[sources.size()];
+        for (Path file : sources) {
+            TokenTable.Stream s = tokenize(table, file);
+            if (n + s.length() + 1 > total) throw new IOException(file + " changed while scanning for repeats");
+            fileStarts[paths.size()] = n;
+            System.arraycopy(s.tokens, 0, text, n, s.length());
+            System.arraycopy(s.lines, 0, lines, n, s.length());
+            n += s.length();
+            paths.add(file.toString());
+            text[n] = -paths.size();
+            lines[n] = s.length() > 0 ? s.lines[s.length() - 1] : 1;
+            n++;
+        }
+        if (n != total) throw new IOException("Files changed while scanning for repeats");
+        // Sentinels sort after all symbols and are all distinct
+        int symbols = table.size();
+        for (int i = 0; i < n; i++) if (text[i] < 0) text[i] = symbols - text[i] - 1;
+        int alphabet = symbols + paths.size();
+
+        // 3. Suffix array and LCP
+        int[] rank = new int[n];
+        int[] tmp = new int[n];
+        int[] sa = suffixArray(text, n, alphabet, rank, tmp);
+        int[] lcp = lcpArray(text, n, sa, rank, tmp);
+
+        // 4. Enumerate LCP intervals bottom-up with a stack; each interval is a right-maximal repeat
+        List<Repeat> repeats = new ArrayList<>();
+        int[] stackLcp = new int[64];
+        int[] stackLeft = new int[64];
+        int top = 0; // stack[0] = (0, 0)
+        for (int i = 1; i <= n; i++) {
+            int cur = i < n ? lcp[i] : 0;
+            int left = i - 1;
+            while (stackLcp[top] > cur) {
+                int len = stackLcp[top];
+                left = stackLeft[top];
+                top--;
+                if (len >= minTokens && isLeftMaximal(text, sa, left, i - 1)) {
+                    repeats.add(toRepeat(len, sa, left, i - 1, lines, fileStarts, paths));
+                }
+            }
+            if (stackLcp[top] < cur) {
+                if (++top == stackLcp.length) {
+                    stackLcp = Arrays.copyOf(stackLcp, top * 2);
+                    stackLeft = Arrays.copyOf(stackLeft, top * 2);
+                }
+                stackLcp[top] = cur;
+                stackLeft[top] = left;
+            }
+        }
+        repeats.sort((a, b) -> Integer.compare(b.length, a.length));
+        return repeats;
+    }
+
+    private static TokenTable.Stream tokenize(TokenTable table, Path file) throws IOException {
+        SourceFile source = SourceFile.read(file);
+        return table.tokenize(source.text, 0, source.text.length(),
+                file.toString().endsWith(".py") ? CodeNormalizer.Language.PYTHON : CodeNormalizer.Language.JAVA, true);
+    }
+
+    // Suffix array by prefix doubling: each round radix-sorts suffixes by (rank[i], rank[i + k]).
+    // On return rank holds the inverse suffix array.
+    static int[] suffixArray(int[] text, int n, int alphabet, int[] rank, int[] tmp) {
+        int[] sa = new int[n];
+        int[] cnt = new int[Math.max(alphabet, n) + 1];
+        for (int i = 0; i < n; i++) cnt[text[i]]++;
+        for (int c = 1; c < cnt.length; c++) cnt[c] += cnt[c - 1];
+        for (int i = n - 1; i >= 0; i--) sa[--cnt[text[i]]] = i;
+        rank[sa[0]] = 0;
+        int classes = 1;
+        for (int i = 1; i < n; i++) {
+            if (text[sa[i]] != text[sa[i - 1]]) classes++;
+            rank[sa[i]] = classes - 1;
+        }
+        for (int k = 1; classes < n; k <<= 1) {
+            // Order by second key: suffixes without one (i >= n - k) first, then by the previous order
+            int p = 0;
+            for (int i = n - k; i < n; i++) tmp[p++] = i;
+            for (int i = 0; i < n; i++) if (sa[i] >= k) tmp[p++] = sa[i] - k;
+            // Stable counting sort by first key
+            Arrays.fill(cnt, 0, classes, 0);
+            for (int i = 0; i < n; i++) cnt[rank[i]]++;
+            for (int c = 1; c < classes; c++) cnt[c] += cnt[c - 1];
+            for (int i = n - 1; i >= 0; i--) sa[--cnt[rank[tmp[i]]]] = tmp[i];
+            // New ranks
+            tmp[sa[0]] = 0;
+            classes = 1;
+            for (int i = 1; i < n; i++) {
+                int a = sa[i - 1], b = sa[i];
+                int ra = a + k < n ? rank[a + k] : -1;
+                int rb = b + k < n ? rank[b + k] : -1;
+                if (rank[a] != rank[b] || ra != rb) classes++;
+                tmp[b] = classes - 1;
+            }
+            System.arraycopy(tmp, 0, rank, 0, n);
+        }
+        return sa;
+    }
+
+    // Kasai's algorithm: lcp[i] = longest common prefix of suffixes sa[i - 1] and sa[i] (lcp[0] = 0).
+    // Uses the inverse suffix array in rank and writes the result into out.
+    static int[] lcpArray(int[] text, int n, int[] sa, int[] rank, int[] out) {
+        int h = 0;
+        out[0] = 0;
+        for (int i = 0; i < n; i++) {
+            int r = rank[i];
+            if (r == 0) {
+                h = 0;
+                continue;
+            }
+            int j = sa[r - 1];
+            while (i + h < n && j + h < n && text[i + h] == text[j + h]) h++;
+            out[r] = h;
+            if (h > 0) h--;
+        }
+        return out;
+    }
+
+    // A repeat is left-maximal if its occurrences are not all preceded by the same token
+    private static boolean isLeftMaximal(int[] text, int[] sa, int from, int to) {
+        int first = sa[from] > 0 ? text[sa[from] - 1] : -1;
+        for (int i = from + 1; i <= to; i++) {
+            int prev = sa[i] > 0 ? text[sa[i] - 1] : -1;
+            if (prev != first || prev < 0) return true;
+        }
+        return first < 0;
+    }
+
+    private static Repeat toRepeat(int len, int[] sa, int from, int to, int[] lines, int[] fileStarts, List<String> paths) {
+        Repeat r = new Repeat(len);
+        int[] starts = Arrays.copyOfRange(sa, from, to + 1);
+        Arrays.sort(starts); // Report occurrences in file / line order
+        for (int p : starts) {
+            int idx = Arrays.binarySearch(fileStarts, 0, paths.size(), p);
+            int file = idx >= 0 ? idx : -idx - 2;
+            r.occurrences.add(new Occurrence(paths.get(file), lines[p], lines[p + len - 1]));
+        }
+        return r;
+    }
+}
@@ -0,0 +1,167 @@
+// ReportWriter.java
+// Writers for machine-readable duplicate reports (JSON Lines and SARIF 2.1.0).
+// Each group is written out as soon as it is passed in, through a large buffered writer;
+// the writer keeps no copy of the groups. The groups themselves are built in memory by the
+// detectors before the reports are written.
+// Usage: open a writer, then for each group call beginGroup, block (once per block), endGroup; close at the end.
+// Place this file in the java/ directory.
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+
+public abstract class ReportWriter implements Closeable {
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    protected final Writer out;
+
+    protected ReportWriter(Path file) throws IOException {
+        this.out = new BufferedWriter(new OutputStreamWriter(Files.newOutputStream(file), StandardCharsets.UTF_8), BUFFER_SIZE);
+    }
+
+    // Open a writer for a format name ("jsonl" or "sarif") in the given directory
+    public static ReportWriter open(String format, Path dir) throws IOException {
+        switch (format) {
+            case "jsonl": return new JsonLines(dir.resolve("duplicates.jsonl"));
+            case "sarif": return new Sarif(dir.resolve("duplicates.sarif"));
+            default: throw new IllegalArgumentException("Unknown report format: " + format);
+        }
+    }
+
+    // Start a group; kind says which detector found it ("exact", "javaparser", ...)
+    public abstract void beginGroup(String id, String kind) throws IOException;
+
+    public abstract void block(String language, String type, String name, String path, int startLine, int endLine) throws IOException;
+
+    public abstract void endGroup() throws IOException;
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+
+    // Write s as a JSON string literal
+    static void jsonString(Writer out, String s) throws IOException {
+        out.write('"');
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            switch (c) {
+                case '"': out.write("\\\""); break;
+                case '\\': out.write("\\\\"); break;
+                case '\n': out.write("\\n"); break;
+                case '\r': out.write("\\r"); break;
+                case '\t': out.write("\\t"); break;
+                default:
+                    if (c < 0x20) out.write(String.format("\\u%04x", (int) c));
+                    else out.write(c);
+            }
+        }
+        out.write('"');
+    }
+
+    // One JSON object per line: {"group":..., "kind":..., "blocks":[{...}, ...]}
+    static class JsonLines extends ReportWriter {
+        private boolean firstBlock;
+
+        JsonLines(Path file) throws IOException {
+            super(file);
+        }
+
+        @Override
+        public void beginGroup(String id, String kind) throws IOException {
+            out.write("{\"group\":");
+            jsonString(out, id);
+            out.write(",\"kind\":");
+            jsonString(out, kind);
+            out.write(",\"blocks\":[");
+            firstBlock = true;
+        }
+
+        @Override
+        public void block(String language, String type, String name, String path, int startLine, int endLine) throws IOException {
+            if (!firstBlock) out.write(',');
+            firstBlock = false;
+            out.write("{\"language\":");
+            jsonString(out, language);
+            out.write(",\"type\":");
+            jsonString(out, type);
+            out.write(",\"name\":");
+            jsonString(out, name);
+            out.write(",\"path\":");
+            jsonString(out, path);
+            out.write(",\"startLine\":" + startLine + ",\"endLine\":" + endLine + "}");
+        }
+
+        @Override
+        public void endGroup() throws IOException {
+            out.write("]}\n");
+        }
+    }
+
+    // A single SARIF run; each group is one result located at its first block,
+    // with the other blocks as related locations
+    static class Sarif extends ReportWriter {
+        private boolean firstResult = true;
+        private int blockIndex;
+        private String groupId;
+        private String groupKind;
+
+        Sarif(Path file) throws IOException {
+            super(file);
+            out.write("{\"version\":\"2.1.0\",");
+            out.write("\"$schema\":\"https://json.schemastore.org/sarif-2.1.0.json\",");
+            out.write("\"runs\":[{\"tool\":{\"driver\":{\"name\":\"duplicate-detection\",\"rules\":[");
+            out.write("{\"id\":\"duplicate-block\",\"shortDescription\":{\"text\":\"Duplicated code block\"}}]}},");
+            out.write("\"results\":[\n");
+        }
+
+        @Override
+        public void beginGroup(String id, String kind) throws IOException {
+            groupId = id;
+            groupKind = kind;
+            blockIndex = 0;
+        }
+
+        @Override
+        public void block(String language, String type, String name, String path, int startLine, int endLine) throws IOException {
+            if (blockIndex == 0) {
+                if (!firstResult) out.write(",\n");
+                firstResult = false;
+                out.write("{\"ruleId\":\"duplicate-block\",\"level\":\"warning\",\"message\":{\"text\":");
+                jsonString(out, "Duplicate " + language + " " + type + " '" + name + "' (" + groupKind + " group " + groupId + ")");
+                out.write("},\"partialFingerprints\":{\"duplicateGroup\":");
+                jsonString(out, groupId);
+                out.write("},\"locations\":[");
+                location(path, startLine, endLine, null);
+                out.write("],\"relatedLocations\":[");
+            } else {
+                if (blockIndex > 1) out.write(',');
+                location(path, startLine, endLine, name);
+            }
+            blockIndex++;
+        }
+
+        @Override
+        public void endGroup() throws IOException {
+            if (blockIndex > 0) out.write("]}");
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.write("\n]}]}\n");
+            super.close();
+        }
+
+        private void location(String path, int startLine, int endLine, String message) throws IOException {
+            out.write("{");
+            if (message != null) {
+                out.write("\"message\":{\"text\":");
+                jsonString(out, "Also duplicated in '" + message + "'");
+                out.write("},");
+            }
+            out.write("\"physicalLocation\":{\"artifactLocation\":{\"uri\":");
+            jsonString(out, path.replace('\\', '/'));
+            out.write("},\"region\":{\"startLine\":" + Math.max(1, startLine) + ",\"endLine\":" + Math.max(1, endLine) + "}}}");
+        }
+    }
+}
@@ -0,0 +1,194 @@
+// ScoreAggregator.java
+// Duplication scores per language, file, package and directory, built from the blocks
+// and duplicate flags the detectors already produced (no file is read again).
+// Block scores count each block once. Line scores count each line of a file once, as the
+// union of the ranges of its blocks, so nested blocks do not count their lines twice; a line
+// is duplicated if any duplicate block covers it.
+// Files are aggregated as blocks are added; packages and directories are rolled up
+// from the file totals when the heatmap is written.
+// Usage: add every scored block once, then read language(...) or writeHeatmap(...).
+// Place this file in the java/ directory.
+
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+
+public class ScoreAggregator {
+    // Block and line counts of one file, package, directory or language
+    public static class Score {
+        int blocks;
+        int duplicateBlocks;
+        long lines;
+        long duplicateLines;
+
+        // One block, with the lines it covers that no earlier block of the file covered
+        void add(boolean duplicate, int newLines, int newDuplicateLines) {
+            blocks++;
+            if (duplicate) duplicateBlocks++;
+            lines += newLines;
+            duplicateLines += newDuplicateLines;
+        }
+
+        void add(Score other) {
+            blocks += other.blocks;
+            duplicateBlocks += other.duplicateBlocks;
+            lines += other.lines;
+            duplicateLines += other.duplicateLines;
+        }
+
+        // Duplicate blocks / all blocks
+        public double blockScore() {
+            return blocks > 0 ? (double) duplicateBlocks / blocks : 0.0;
+        }
+
+        // Lines covered by a duplicate block / lines covered by any block
+        public double lineScore() {
+            return lines > 0 ? (double) duplicateLines / lines : 0.0;
+        }
+    }
+
+    // Per-file totals, with what is needed to roll them up
+    private static class FileScore extends Score {
+        final String language;
+        final String pkg;
+        final BitSet covered = new BitSet();    // Lines inside any block
+        final BitSet duplicated = new BitSet(); // Lines inside a duplicate block
+
+        FileScore(String language, String pkg) {
+            this.language = language;
+            this.pkg = pkg;
+        }
+    }
+
+    private final Map<String, Score> byLanguage = new TreeMap<>();
+    private final Map<String, FileScore> byFile = new TreeMap<>();
+
+    // A block found by the line-based extractors (Python, or Java without JavaParser)
+    public void add(CodeBlock block) {
+        add(block.language, block.source, block.startLine, block.endLine, block.isDuplicate);
+    }
+
+    // A block found by JavaParser; duplicate says whether it belongs to a clone group
+    public void add(JavaParserDuplicateDetection.Block block, boolean duplicate) {
+        add("java", block.source, block.startLine, block.endLine, duplicate);
+    }
+
+    public void add(String language, SourceFile source, int startLine, int endLine, boolean duplicate) {
+        Score total = byLanguage.computeIfAbsent(language, k -> new Score());
+        int end = Math.max(startLine, endLine) + 1;
+        if (source == null) {
+            // Blocks built from a string only count towards the language, with all of their lines
+            total.add(duplicate, end - startLine, duplicate ? end - startLine : 0);
+            return;
+        }
+        FileScore file = byFile.get(source.path);
+        if (file == null) {
+            file = new FileScore(language, packageOf(language, source));
+            byFile.put(source.path, file);
+        }
+        int newLines = cover(file.covered, startLine, end);
+        int newDuplicateLines = duplicate ? cover(file.duplicated, startLine, end) : 0;
+        file.add(duplicate, newLines, newDuplicateLines);
+        total.add(duplicate, newLines, newDuplicateLines);
+    }
+
+    // Marks lines [from, to) and returns how many were not marked before
+    private static int cover(BitSet lines, int from, int to) {
+        int before = lines.get(from, to).cardinality();
+        lines.set(from, to);
+        return to - from - before;
+    }
+
+    // Totals of one language (empty if it has no blocks)
+    public Score language(String language) {
+        return byLanguage.getOrDefault(language, new Score());
+    }
+
+    // Per-package totals: the Java package declaration, or the dotted directory of a Python file
+    public Map<String, Score> packages() {
+        Map<String, Score> packages = new TreeMap<>();
+        for (FileScore file : byFile.values()) {
+            packages.computeIfAbsent(file.language + ":" + file.pkg, k -> new Score()).add(file);
+        }
+        return packages;
+    }
+
+    // Per-directory totals; every directory includes all files below it
+    public Map<String, Score> directories() {
+        Map<String, Score> dirs = new TreeMap<>();
+        for (Map.Entry<String, FileScore> e : byFile.entrySet()) {
+            Path dir = Paths.get(e.getKey()).getParent();
+            if (dir == null) dirs.computeIfAbsent(".", k -> new Score()).add(e.getValue());
+            for (; dir != null; dir = dir.getParent()) {
+                dirs.computeIfAbsent(dir.toString(), k -> new Score()).add(e.getValue());
+            }
+        }
+        return dirs;
+    }
+
+    public Map<String, ? extends Score> files() {
+        return Collections.unmodifiableMap(byFile);
+    }
+
+    // Files, packages and directories, most duplicated lines first
+    public void writeHeatmap(Writer out) throws IOException {
+        writeSection(out, "Files", files());
+        writeSection(out, "Packages", packages());
+        writeSection(out, "Directories", directories());
+    }
+
+    private static void writeSection(Writer out, String title, Map<String, ? extends Score> scores) throws IOException {
+        List<Map.Entry<String, ? extends Score>> entries = new ArrayList<>(scores.entrySet());
+        entries.sort((a, b) -> {
+            int c = Long.compare(b.getValue().duplicateLines, a.getValue().duplicateLines);
+            return c != 0 ? c : a.getKey().compareTo(b.getKey());
+        });
+        out.write("[" + title + "]\n");
+        for (Map.Entry<String, ? extends Score> e : entries) {
+            Score s = e.getValue();
+            out.write(String.format("%.2f blocks (%d/%d)  %.2f lines (%d/%d)  %s\n",
+                    s.blockScore(), s.duplicateBlocks, s.blocks, s.lineScore(), s.duplicateLines, s.lines, e.getKey()));
+        }
+        out.write("\n");
+    }
+
+    private static String packageOf(String language, SourceFile source) {
+        if ("java".equals(language)) return javaPackage(source.text);
+        Path dir = Paths.get(source.path).getParent();
+        return dir != null ? dir.toString().replace(File.separatorChar, '.') : "(root)";
+    }
+
+    // The name in the "package" declaration, skipping leading whitespace and comments
+    static String javaPackage(CharSequence text) {
+        int i = 0;
+        int n = text.length();
+        while (i < n) {
+            char c = text.charAt(i);
+            if (Character.isWhitespace(c)) {
+                i++;
+            } else if (c == '/' && i + 1 < n && text.charAt(i + 1) == '/') {
+                while (i < n && text.charAt(i) != '\n') i++;
+            } else if (c == '/' && i + 1 < n && text.charAt(i + 1) == '*') {
+                i += 3;
+                while (i < n && !(text.charAt(i - 1) == '*' && text.charAt(i) == '/')) i++;
+                i++;
+            } else {
+                break;
+            }
+        }
+        if (!startsWithWord(text, i, "package")) return "(default)";
+        StringBuilder name = new StringBuilder();
+        for (i += "package".length(); i < n && text.charAt(i) != ';'; i++) {
+            if (!Character.isWhitespace(text.charAt(i))) name.append(text.charAt(i));
+        }
+        return name.length() > 0 ? name.toString() : "(default)";
+    }
+
+    private static boolean startsWithWord(CharSequence text, int at, String word) {
+        if (at + word.length() > text.length()) return false;
+        for (int k = 0; k < word.length(); k++) {
+            if (text.charAt(at + k) != word.charAt(k)) return false;
+        }
+        return at + word.length() == text.length() || !Character.isJavaIdentifierPart(text.charAt(at + word.length()));
+    }
+}
@@ -0,0 +1,369 @@
+// ScoreSketch.java
+// Approximate duplication scores in bounded memory, for trend dashboards over very large
+// trees. Block fingerprints are streamed file by file into per-language sketches and the
+// blocks are dropped right away; nothing else is kept, whatever the size of the tree.
+// Per language:
+//   - HyperLogLog (2^16 registers): distinct fingerprints, about 0.4% standard error
+//   - bottom-k sample (the 16384 distinct fingerprints with the smallest hash), with the
+//     exact count and lines of each sampled fingerprint: the fraction of singletons
+//   - count-min sketch (4 x 8192): copies of the largest clone groups (heavy hitters)
+// Duplicate blocks are estimated as blocks - distinct * singleton fraction, duplicate
+// lines from the lines of the sampled singletons. While fewer than 16384 distinct
+// fingerprints were seen the sample holds all of them and the scores are exact.
+// All three sketches merge losslessly, so sketch files from different runs or shards
+// add up to the sketch of the union (--merge).
+// Usage: java ScoreSketch [--scan <dir>]... [--include <glob>]... [--exclude <glob>]...
+//                         [--merge <sketch file>]... [--output <sketch file>] [--report <dir>]
+// Writes <report dir, default outputjava>/duplication_score_estimate.txt.
+// Place this file in the java/ directory.
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+
+public class ScoreSketch {
+    private static final int MAGIC = 0x4444534b; // "DDSK"
+    private static final int VERSION = 1;
+
+    static final int HLL_BITS = 16;
+    static final int SAMPLE_SIZE = 16384;
+    static final int CM_DEPTH = 4;
+    static final int CM_WIDTH = 8192;
+    static final int HEAVY_HITTERS = 16;
+
+    // Sketches of one language
+    public static class LanguageSketch {
+        long blocks;
+        long lines;
+        final byte[] registers = new byte[1 << HLL_BITS];
+        final int[] counts = new int[CM_DEPTH * CM_WIDTH];
+        // Bottom-k sample: exact {count, lines} of the sampled fingerprints, and a max-heap on their rank
+        final Map<Fingerprint, long[]> sample = new HashMap<>();
+        final PriorityQueue<Fingerprint> sampleOrder =
+                new PriorityQueue<>((x, y) -> Long.compareUnsigned(rank(y), rank(x)));
+        // Heavy-hitter candidates and a label of one of their blocks
+        final Map<Fingerprint, String> heavy = new HashMap<>();
+
+        public void add(Fingerprint fp, int blockLines, String label) {
+            blocks++;
+            lines += blockLines;
+
+            // HyperLogLog: top bits of hi pick the register, the rest give the rank
+            int register = (int) (fp.hi >>> (64 - HLL_BITS));
+            int rho = Long.numberOfLeadingZeros((fp.hi << HLL_BITS) | (1L << (HLL_BITS - 1))) + 1;
+            if (rho > registers[register]) registers[register] = (byte) rho;
+
+            // Bottom-k: a fingerprint is either sampled from its first copy on or never
+            long[] entry = sample.get(fp);
+            if (entry != null) {
+                entry[0]++;
+                entry[1] += blockLines;
+            } else if (sample.size() < SAMPLE_SIZE || Long.compareUnsigned(rank(fp), rank(sampleOrder.peek())) < 0) {
+                sample.put(fp, new long[] {1, blockLines});
+                sampleOrder.add(fp);
+                if (sample.size() > SAMPLE_SIZE) sample.remove(sampleOrder.poll());
+            }
+
+            // Count-min, then keep the fingerprint if it is now one of the largest groups
+            int estimate = Integer.MAX_VALUE;
+            for (int row = 0; row < CM_DEPTH; row++) {
+                int i = row * CM_WIDTH + bucket(fp, row);
+                estimate = Math.min(estimate, ++counts[i]);
+            }
+            if (estimate >= 2) offerHeavy(fp, label, estimate);
+        }
+
+        private void offerHeavy(Fingerprint fp, String label, int estimate) {
+            if (heavy.containsKey(fp)) return;
+            if (heavy.size() < HEAVY_HITTERS) {
+                heavy.put(fp, label);
+                return;
+            }
+            Fingerprint smallest = null;
+            int smallestEstimate = Integer.MAX_VALUE;
+            for (Fingerprint h : heavy.keySet()) {
+                int e = estimate(h);
+                if (e < smallestEstimate) {
+                    smallest = h;
+                    smallestEstimate = e;
+                }
+            }
+            if (estimate > smallestEstimate) {
+                heavy.remove(smallest);
+                heavy.put(fp, label);
+            }
+        }
+
+        // Count-min estimate of the copies of a fingerprint (never below the true count)
+        public int estimate(Fingerprint fp) {
+            int estimate = Integer.MAX_VALUE;
+            for (int row = 0; row < CM_DEPTH; row++) estimate = Math.min(estimate, counts[row * CM_WIDTH + bucket(fp, row)]);
+            return estimate;
+        }
+
+        // HyperLogLog estimate, with linear counting for small cardinalities
+        public long distinct() {
+            if (sample.size() < SAMPLE_SIZE) return sample.size(); // The sample holds every fingerprint
+            int m = registers.length;
+            double sum = 0;
+            int zeros = 0;
+            for (byte r : registers) {
+                sum += Math.scalb(1.0, -r);
+                if (r == 0) zeros++;
+            }
+            double estimate = 0.7213 / (1 + 1.079 / m) * m * m / sum;
+            if (estimate <= 2.5 * m && zeros > 0) estimate = m * Math.log((double) m / zeros);
+            return Math.round(estimate);
+        }
+
+        // Estimated blocks whose fingerprint occurs more than once
+        public long duplicateBlocks() {
+            long sampledSingletons = 0;
+            for (long[] e : sample.values()) {
+                if (e[0] == 1) sampledSingletons++;
+            }
+            if (sample.isEmpty()) return 0;
+            double singletons = (double) distinct() * sampledSingletons / sample.size();
+            return Math.max(0, Math.min(blocks, Math.round(blocks - singletons)));
+        }
+
+        // Estimated lines in those blocks
+        public long duplicateLines() {
+            long sampledLines = 0;
+            long singletonLines = 0;
+            for (long[] e : sample.values()) {
+                sampledLines += e[1];
+                if (e[0] == 1) singletonLines += e[1];
+            }
+            if (sampledLines == 0) return 0;
+            return Math.round(lines * (1 - (double) singletonLines / sampledLines));
+        }
+
+        public double blockScore() {
+            return blocks > 0 ? (double) duplicateBlocks() / blocks : 0.0;
+        }
+
+        public double lineScore() {
+            return lines > 0 ? (double) duplicateLines() / lines : 0.0;
+        }
+
+        // Largest clone groups, by estimated copies
+        public List<Map.Entry<Fingerprint, String>> heavyHitters() {
+            List<Map.Entry<Fingerprint, String>> list = new ArrayList<>(heavy.entrySet());
+            list.sort((x, y) -> Integer.compare(estimate(y.getKey()), estimate(x.getKey())));
+            return list;
+        }
+
+        // Add another sketch of the same language into this one
+        public void merge(LanguageSketch other) {
+            blocks += other.blocks;
+            lines += other.lines;
+            for (int i = 0; i < registers.length; i++) registers[i] = (byte) Math.max(registers[i], other.registers[i]);
+            for (int i = 0; i < counts.length; i++) counts[i] += other.counts[i];
+            // A fingerprint in the bottom-k of the union is in the bottom-k of every part that saw it,
+            // so its merged count is exact
+            for (Map.Entry<Fingerprint, long[]> e : other.sample.entrySet()) {
+                long[] mine = sample.get(e.getKey());
+                if (mine != null) {
+                    mine[0] += e.getValue()[0];
+                    mine[1] += e.getValue()[1];
+                } else {
+                    sample.put(e.getKey(), e.getValue().clone());
+                    sampleOrder.add(e.getKey());
+                }
+            }
+            while (sample.size() > SAMPLE_SIZE) sample.remove(sampleOrder.poll());
+            // Candidates of both sides, ranked by the merged counts
+            Map<Fingerprint, String> candidates = new HashMap<>(heavy);
+            other.heavy.forEach(candidates::putIfAbsent);
+            List<Map.Entry<Fingerprint, String>> ranked = new ArrayList<>(candidates.entrySet());
+            ranked.sort((x, y) -> Integer.compare(estimate(y.getKey()), estimate(x.getKey())));
+            heavy.clear();
+            for (Map.Entry<Fingerprint, String> e : ranked.subList(0, Math.min(HEAVY_HITTERS, ranked.size()))) {
+                heavy.put(e.getKey(), e.getValue());
+            }
+        }
+
+        // Sample order: a remix of lo, independent of the HyperLogLog and count-min hashes
+        private static long rank(Fingerprint fp) {
+            long k = fp.lo * 0x9e3779b97f4a7c15L;
+            return k ^ (k >>> 29);
+        }
+
+        private static int bucket(Fingerprint fp, int row) {
+            long h = fp.lo + row * fp.hi;
+            h ^= h >>> 31;
+            h *= 0xbf58476d1ce4e5b9L;
+            return (int) ((h >>> 40) & (CM_WIDTH - 1));
+        }
+    }
+
+    private final Map<String, LanguageSketch> languages = new TreeMap<>();
+
+    public LanguageSketch language(String language) {
+        return languages.computeIfAbsent(language, k -> new LanguageSketch());
+    }
+
+    // A Python block from the line-based extractor
+    public void add(CodeBlock block) {
+        language(block.language).add(DuplicateDetection.fingerprintOf(block), Math.max(1, block.endLine - block.startLine + 1),
+                "block " + block.name + " [" + block.startLine + "-" + block.endLine + "] "
+                        + (block.source != null ? block.source.path : ""));
+    }
+
+    // A Java block from JavaParser
+    public void add(JavaParserDuplicateDetection.Block block) {
+        language("java").add(block.fingerprint, Math.max(1, block.endLine - block.startLine + 1),
+                block.type + " " + block.name + " [" + block.startLine + "-" + block.endLine + "] "
+                        + (block.source != null ? block.source.path : ""));
+    }
+
+    // Blocks of one file, scored like Main does: Python from the line-based blocks, Java from JavaParser
+    public void addFile(Path file) throws IOException {
+        SourceFile source = SourceFile.read(file);
+        if (source.path.endsWith(".java")) {
+            List<JavaParserDuplicateDetection.Block> blocks =
+                    JavaParserDuplicateDetection.extractBlocks(source, JavaParserDuplicateDetection.Options.DEFAULT);
+            synchronized (this) {
+                for (JavaParserDuplicateDetection.Block b : blocks) add(b);
+            }
+        } else {
+            List<CodeBlock> blocks = Main.extractBlocks(source);
+            DuplicateDetection.fingerprintAll(blocks);
+            synchronized (this) {
+                for (CodeBlock b : blocks) {
+                    if ("python".equals(b.language)) add(b);
+                }
+            }
+        }
+    }
+
+    public void merge(ScoreSketch other) {
+        for (Map.Entry<String, LanguageSketch> e : other.languages.entrySet()) language(e.getKey()).merge(e.getValue());
+    }
+
+    public void write(Path file) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(languages.size());
+            for (Map.Entry<String, LanguageSketch> e : languages.entrySet()) {
+                LanguageSketch s = e.getValue();
+                out.writeUTF(e.getKey());
+                out.writeLong(s.blocks);
+                out.writeLong(s.lines);
+                out.write(s.registers);
+                for (int c : s.counts) out.writeInt(c);
+                out.writeInt(s.sample.size());
+                for (Map.Entry<Fingerprint, long[]> entry : s.sample.entrySet()) {
+                    out.writeLong(entry.getKey().lo);
+                    out.writeLong(entry.getKey().hi);
+                    out.writeLong(entry.getValue()[0]);
+                    out.writeLong(entry.getValue()[1]);
+                }
+                out.writeInt(s.heavy.size());
+                for (Map.Entry<Fingerprint, String> entry : s.heavy.entrySet()) {
+                    out.writeLong(entry.getKey().lo);
+                    out.writeLong(entry.getKey().hi);
+                    out.writeUTF(entry.getValue());
+                }
+            }
+        }
+    }
+
+    public static ScoreSketch read(Path file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) throw new IOException("Not a score sketch: " + file);
+            ScoreSketch sketch = new ScoreSketch();
+            int languageCount = in.readInt();
+            for (int l = 0; l < languageCount; l++) {
+                LanguageSketch s = sketch.language(in.readUTF());
+                s.blocks = in.readLong();
+                s.lines = in.readLong();
+                in.readFully(s.registers);
+                for (int i = 0; i < s.counts.length; i++) s.counts[i] = in.readInt();
+                int sampled = in.readInt();
+                for (int i = 0; i < sampled; i++) {
+                    Fingerprint fp = new Fingerprint(in.readLong(), in.readLong());
+                    s.sample.put(fp, new long[] {in.readLong(), in.readLong()});
+                    s.sampleOrder.add(fp);
+                }
+                int heavy = in.readInt();
+                for (int i = 0; i < heavy; i++) s.heavy.put(new Fingerprint(in.readLong(), in.readLong()), in.readUTF());
+            }
+            return sketch;
+        }
+    }
+
+    // Score report in the format of duplication_score.txt, plus line scores and the largest groups
+    public String report() {
+        StringBuilder sb = new StringBuilder();
+        LanguageSketch python = language("python");
+        LanguageSketch java = language("java");
+        sb.append(String.format("Python Duplication Score: %.2f (~%d duplicate blocks / %d total blocks)\n",
+                python.blockScore(), python.duplicateBlocks(), python.blocks));
+        sb.append(String.format("Java Duplication Score: %.2f (~%d duplicate blocks / %d total blocks)\n",
+                java.blockScore(), java.duplicateBlocks(), java.blocks));
+        for (Map.Entry<String, LanguageSketch> e : languages.entrySet()) {
+            LanguageSketch s = e.getValue();
+            if (s.blocks == 0) continue;
+            sb.append(String.format("\n[%s] ~%d distinct blocks, line score %.2f (~%d duplicate lines / %d lines)\n",
+                    e.getKey(), s.distinct(), s.lineScore(), s.duplicateLines(), s.lines));
+            for (Map.Entry<Fingerprint, String> h : s.heavyHitters()) {
+                sb.append(String.format("  ~%d copies: %s\n", s.estimate(h.getKey()), h.getValue()));
+            }
+        }
+        return sb.toString();
+    }
+
+    public static void main(String[] args) throws IOException {
+        List<Path> scanRoots = new ArrayList<>();
+        List<String> includes = new ArrayList<>();
+        List<String> excludes = new ArrayList<>();
+        List<Path> merges = new ArrayList<>();
+        Path output = null;
+        Path reportDir = Paths.get("outputjava");
+        for (int a = 0; a < args.length; a++) {
+            switch (args[a]) {
+                case "--scan": scanRoots.add(Paths.get(args[++a])); break;
+                case "--include": includes.add(args[++a]); break;
+                case "--exclude": excludes.add(args[++a]); break;
+                case "--merge": merges.add(Paths.get(args[++a])); break;
+                case "--output": output = Paths.get(args[++a]); break;
+                case "--report": reportDir = Paths.get(args[++a]); break;
+                default:
+                    System.out.println("Unknown argument: " + args[a]);
+                    return;
+            }
+        }
+        if (scanRoots.isEmpty() && merges.isEmpty()) {
+            System.out.println("Usage: java ScoreSketch [--scan <dir>]... [--include <glob>]... [--exclude <glob>]...");
+            System.out.println("                        [--merge <sketch file>]... [--output <sketch file>] [--report <dir>]");
+            return;
+        }
+        long t0 = System.nanoTime();
+        ScoreSketch sketch = new ScoreSketch();
+        int fileCount = 0;
+        if (!scanRoots.isEmpty()) {
+            List<Path> files = new DirectoryScanner(includes, excludes, 0, 0).listFiles(scanRoots);
+            fileCount = files.size();
+            files.parallelStream().forEach(f -> {
+                try {
+                    sketch.addFile(f);
+                } catch (IOException | RuntimeException e) {
+                    System.out.println("Cannot read: " + f + " (" + e.getMessage() + ")");
+                }
+            });
+        }
+        for (Path m : merges) sketch.merge(read(m));
+        if (output != null) sketch.write(output);
+
+        String report = sketch.report();
+        System.out.print(report);
+        Files.createDirectories(reportDir);
+        Files.write(reportDir.resolve("duplication_score_estimate.txt"), report.getBytes(StandardCharsets.UTF_8));
+        System.out.printf("[Sketch] %d files, %d sketches merged in %.1f ms%s\n", fileCount, merges.size(),
+                (System.nanoTime() - t0) / 1e6, output != null ? " -> " + output : "");
+    }
+}
@@ -0,0 +1,423 @@
+// ShardIndex.java
+// Sorted, self-contained fingerprint index of the blocks scanned by one shard (one CI job).
+// Each shard writes its scored blocks (Python CodeBlocks, JavaParser Java blocks) sorted
+// by fingerprint; "merge" k-way merges any number of shard files in one streaming pass
+// into global clone groups and duplication scores, without reading any source file.
+// Paths are stored relative to the repository root (--shard-root), so shards written in
+// different checkouts match. Merging keeps one record per shard plus the current group in memory. Java fingerprints
+// depend on the JavaParser options and Python fingerprints on --python-ast, so shards written with different
+// options are rejected.
+// File layout: header (magic, version, JavaParser and Python options, file paths, record count), records sorted by
+// (fingerprint, language), then a sparse fence table (every FENCE_INTERVAL-th key and its
+// byte offset) and the fence table's offset, for point lookups.
+// Usage: java Main ... --shard-index <file>          (write one shard)
+//        java ShardIndex merge [--output <dir>] <shard file>...
+// Place this file in the java/ directory.
+
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+
+public class ShardIndex {
+    private static final int MAGIC = 0x44445348; // "DDSH"
+    private static final int VERSION = 3;
+    static final int FENCE_INTERVAL = 256;
+
+    // One indexed block
+    public static class Record {
+        Fingerprint fingerprint;
+        String language;
+        String type;       // "block" for CodeBlocks, "Class"/"Method" for JavaParser blocks
+        String name;
+        String path;
+        int startLine;
+        int endLine;
+
+        Record(Fingerprint fingerprint, String language, String type, String name, String path, int startLine, int endLine) {
+            this.fingerprint = fingerprint;
+            this.language = language;
+            this.type = type;
+            this.name = name;
+            this.path = path;
+            this.startLine = startLine;
+            this.endLine = endLine;
+        }
+    }
+
+    // Collects a shard's blocks, then sorts and writes them
+    public static class Writer {
+        private final List<Record> records = new ArrayList<>();
+        private final JavaParserDuplicateDetection.Options javaOptions;
+        private final PythonAst.Options pythonOptions;
+        private final Path root;
+
+        // javaOptions, pythonOptions: how the Java and Python blocks were fingerprinted; root: the repository root
+        public Writer(JavaParserDuplicateDetection.Options javaOptions, PythonAst.Options pythonOptions, Path root) {
+            this.javaOptions = javaOptions;
+            this.pythonOptions = pythonOptions;
+            this.root = root.toAbsolutePath().normalize();
+        }
+
+        public void add(CodeBlock block) {
+            records.add(new Record(DuplicateDetection.fingerprintOf(block), block.language, "block", block.name,
+                    pathOf(block.source), block.startLine, block.endLine));
+        }
+
+        public void add(JavaParserDuplicateDetection.Block block) {
+            records.add(new Record(block.fingerprint, "java", block.type, block.name,
+                    pathOf(block.source), block.startLine, block.endLine));
+        }
+
+        private String pathOf(SourceFile source) {
+            return source != null ? relativePath(root, Paths.get(source.path)) : "";
+        }
+
+        public void write(Path file) throws IOException {
+            records.sort(ShardIndex::compare);
+            Map<String, Integer> fileIds = new LinkedHashMap<>();
+            for (Record r : records) fileIds.putIfAbsent(r.path, fileIds.size());
+            Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+            try (CountingOutput counter = new CountingOutput(new BufferedOutputStream(Files.newOutputStream(tmp), 1 << 16));
+                 DataOutputStream out = new DataOutputStream(counter)) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                writeOptions(out, javaOptions, pythonOptions);
+                out.writeInt(fileIds.size());
+                for (String path : fileIds.keySet()) out.writeUTF(path);
+                out.writeLong(records.size());
+                List<long[]> fences = new ArrayList<>();
+                for (int i = 0; i < records.size(); i++) {
+                    Record r = records.get(i);
+                    if (i % FENCE_INTERVAL == 0) fences.add(new long[] {r.fingerprint.hi, r.fingerprint.lo, counter.count});
+                    out.writeLong(r.fingerprint.hi);
+                    out.writeLong(r.fingerprint.lo);
+                    out.writeUTF(r.language);
+                    out.writeUTF(r.type);
+                    out.writeUTF(r.name);
+                    out.writeInt(fileIds.get(r.path));
+                    out.writeInt(r.startLine);
+                    out.writeInt(r.endLine);
+                }
+                long fenceOffset = counter.count;
+                out.writeInt(fences.size());
+                for (long[] f : fences) {
+                    out.writeLong(f[0]);
+                    out.writeLong(f[1]);
+                    out.writeLong(f[2]);
+                }
+                out.writeLong(fenceOffset);
+            }
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    // Streams the records of one shard file in sorted order
+    public static class Reader implements Closeable {
+        private final DataInputStream in;
+        private final String[] paths;
+        private long remaining;
+        final JavaParserDuplicateDetection.Options javaOptions; // Options the shard's Java blocks were extracted with
+        final PythonAst.Options pythonOptions;                  // Options the shard's Python blocks were fingerprinted with
+        Record current; // Record under the cursor (null once exhausted)
+
+        public Reader(Path file) throws IOException {
+            in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 1 << 16));
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                in.close();
+                throw new IOException("Not a shard index: " + file);
+            }
+            javaOptions = readOptions(in);
+            pythonOptions = readPythonOptions(in);
+            paths = new String[in.readInt()];
+            for (int i = 0; i < paths.length; i++) paths[i] = in.readUTF();
+            remaining = in.readLong();
+            advance();
+        }
+
+        // Move to the next record; returns false at the end of the shard
+        public boolean advance() throws IOException {
+            if (remaining == 0) {
+                current = null;
+                return false;
+            }
+            remaining--;
+            long hi = in.readLong();
+            long lo = in.readLong();
+            current = new Record(new Fingerprint(lo, hi), in.readUTF(), in.readUTF(), in.readUTF(),
+                    paths[in.readInt()], in.readInt(), in.readInt());
+            return true;
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+
+    // Point lookups in a shard file through its fence table: one seek and one read of at
+    // most FENCE_INTERVAL records per fingerprint, whatever the size of the shard
+    public static class Lookup implements Closeable {
+        private final RandomAccessFile file;
+        private final String[] paths;
+        final JavaParserDuplicateDetection.Options javaOptions; // Options the shard's Java blocks were extracted with
+        final PythonAst.Options pythonOptions;                  // Options the shard's Python blocks were fingerprinted with
+        private final long[] fenceHi;
+        private final long[] fenceLo;
+        private final long[] fenceOffset; // One extra entry: the end of the records
+        private final long records;
+
+        public Lookup(Path path) throws IOException {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path), 1 << 16))) {
+                if (in.readInt() != MAGIC || in.readInt() != VERSION) throw new IOException("Not a shard index: " + path);
+                javaOptions = readOptions(in);
+                pythonOptions = readPythonOptions(in);
+                paths = new String[in.readInt()];
+                for (int i = 0; i < paths.length; i++) paths[i] = in.readUTF();
+                records = in.readLong();
+            }
+            file = new RandomAccessFile(path.toFile(), "r");
+            try {
+                file.seek(file.length() - 8);
+                long fences = file.readLong();
+                file.seek(fences);
+                int n = file.readInt();
+                byte[] table = new byte[n * 24];
+                file.readFully(table);
+                DataInputStream in = new DataInputStream(new ByteArrayInputStream(table));
+                fenceHi = new long[n];
+                fenceLo = new long[n];
+                fenceOffset = new long[n + 1];
+                for (int i = 0; i < n; i++) {
+                    fenceHi[i] = in.readLong();
+                    fenceLo[i] = in.readLong();
+                    fenceOffset[i] = in.readLong();
+                }
+                fenceOffset[n] = fences;
+            } catch (IOException e) {
+                file.close();
+                throw e;
+            }
+        }
+
+        // All records with this fingerprint (any language)
+        public synchronized List<Record> find(Fingerprint fp) throws IOException {
+            List<Record> found = new ArrayList<>();
+            // Last fence strictly below fp: a run of equal keys may start before the fence at fp
+            int lo = 0;
+            int hi = fenceHi.length - 1;
+            int start = 0;
+            while (lo <= hi) {
+                int mid = (lo + hi) >>> 1;
+                if (compare(new Fingerprint(fenceLo[mid], fenceHi[mid]), fp) < 0) {
+                    start = mid;
+                    lo = mid + 1;
+                } else {
+                    hi = mid - 1;
+                }
+            }
+            for (int f = start; f < fenceHi.length; f++) {
+                byte[] chunk = new byte[(int) (fenceOffset[f + 1] - fenceOffset[f])];
+                file.seek(fenceOffset[f]);
+                file.readFully(chunk);
+                DataInputStream in = new DataInputStream(new ByteArrayInputStream(chunk));
+                while (in.available() > 0) {
+                    long h = in.readLong();
+                    long l = in.readLong();
+                    Record r = new Record(new Fingerprint(l, h), in.readUTF(), in.readUTF(), in.readUTF(),
+                            paths[in.readInt()], in.readInt(), in.readInt());
+                    int c = compare(r.fingerprint, fp);
+                    if (c > 0) return found;
+                    if (c == 0) found.add(r);
+                }
+            }
+            return found;
+        }
+
+        @Override
+        public void close() throws IOException {
+            file.close();
+        }
+    }
+
+    // Identity of a set of shards, in order: their record counts and fence tables (keys and
+    // byte offsets), hashed. Read from the shards' headers and fence tables only.
+    static Fingerprint identity(List<Lookup> shards) {
+        Fingerprint.Hasher h = new Fingerprint.Hasher();
+        for (Lookup shard : shards) {
+            update(h, shard.records);
+            update(h, shard.fenceHi.length);
+            for (int i = 0; i < shard.fenceHi.length; i++) {
+                update(h, shard.fenceHi[i]);
+                update(h, shard.fenceLo[i]);
+                update(h, shard.fenceOffset[i]);
+            }
+        }
+        return h.finish();
+    }
+
+    private static void update(Fingerprint.Hasher h, long v) {
+        for (int shift = 0; shift < 64; shift += 16) h.update((char) (v >>> shift));
+    }
+
+    // Path of a file relative to an absolute, normalized root, with '/' separators
+    // (files outside the root keep their absolute path)
+    static String relativePath(Path root, Path file) {
+        Path abs = file.toAbsolutePath().normalize();
+        return (abs.startsWith(root) ? root.relativize(abs) : abs).toString().replace(File.separatorChar, '/');
+    }
+
+    private static void writeOptions(DataOutputStream out, JavaParserDuplicateDetection.Options options,
+            PythonAst.Options pythonOptions) throws IOException {
+        out.writeBoolean(options.anonymize);
+        out.writeBoolean(options.allGranularities);
+        out.writeInt(options.minNodes);
+        out.writeBoolean(pythonOptions.structural);
+        out.writeInt(pythonOptions.minTokens);
+    }
+
+    private static JavaParserDuplicateDetection.Options readOptions(DataInputStream in) throws IOException {
+        boolean anonymize = in.readBoolean();
+        boolean allGranularities = in.readBoolean();
+        return new JavaParserDuplicateDetection.Options(anonymize, allGranularities, in.readInt());
+    }
+
+    private static PythonAst.Options readPythonOptions(DataInputStream in) throws IOException {
+        boolean structural = in.readBoolean();
+        return new PythonAst.Options(structural, in.readInt());
+    }
+
+    // Sort order of records: fingerprint (unsigned, high half first), then language
+    static int compare(Record a, Record b) {
+        int c = compare(a.fingerprint, b.fingerprint);
+        return c != 0 ? c : a.language.compareTo(b.language);
+    }
+
+    static int compare(Fingerprint a, Fingerprint b) {
+        int c = Long.compareUnsigned(a.hi, b.hi);
+        return c != 0 ? c : Long.compareUnsigned(a.lo, b.lo);
+    }
+
+    // Per-language totals of a merge: {blocks, duplicate blocks}
+    public static class MergeResult {
+        final Map<String, long[]> counts = new TreeMap<>();
+        long groups;
+
+        long[] counts(String language) {
+            return counts.computeIfAbsent(language, k -> new long[2]);
+        }
+    }
+
+    // K-way merge of sorted shards. Every run of records with the same fingerprint and
+    // language that holds two or more blocks is written to groupsOut as one clone group.
+    public static MergeResult merge(List<Path> shards, java.io.Writer groupsOut) throws IOException {
+        List<Reader> readers = new ArrayList<>();
+        MergeResult result = new MergeResult();
+        try {
+            for (Path shard : shards) {
+                Reader reader = new Reader(shard);
+                readers.add(reader);
+                if (!reader.javaOptions.equals(readers.get(0).javaOptions)) {
+                    throw new IOException(String.format("%s was written with JavaParser options \"%s\", %s with \"%s\"",
+                            shard, reader.javaOptions, shards.get(0), readers.get(0).javaOptions));
+                }
+                if (!reader.pythonOptions.equals(readers.get(0).pythonOptions)) {
+                    throw new IOException(String.format("%s was written with Python options \"%s\", %s with \"%s\"",
+                            shard, reader.pythonOptions, shards.get(0), readers.get(0).pythonOptions));
+                }
+            }
+            // Ties go to the earlier shard, so groups list blocks in shard order
+            PriorityQueue<Integer> heap = new PriorityQueue<>((x, y) -> {
+                int c = compare(readers.get(x).current, readers.get(y).current);
+                return c != 0 ? c : Integer.compare(x, y);
+            });
+            for (int i = 0; i < readers.size(); i++) {
+                if (readers.get(i).current != null) heap.add(i);
+            }
+            List<Record> run = new ArrayList<>();
+            while (!heap.isEmpty()) {
+                int i = heap.poll();
+                Reader r = readers.get(i);
+                if (!run.isEmpty() && compare(run.get(0), r.current) != 0) {
+                    emit(run, groupsOut, result);
+                    run.clear();
+                }
+                run.add(r.current);
+                if (r.advance()) heap.add(i);
+            }
+            emit(run, groupsOut, result);
+        } finally {
+            for (Reader r : readers) r.close();
+        }
+        return result;
+    }
+
+    private static void emit(List<Record> run, java.io.Writer out, MergeResult result) throws IOException {
+        if (run.isEmpty()) return;
+        long[] counts = result.counts(run.get(0).language);
+        counts[0] += run.size();
+        if (run.size() < 2) return;
+        counts[1] += run.size();
+        result.groups++;
+        out.write("Duplicate block found (" + run.get(0).language + ", " + run.get(0).fingerprint.toHex() + "):\n");
+        for (Record r : run) {
+            out.write("  -> " + r.type + " " + r.name + " [" + r.startLine + "-" + r.endLine + "] " + r.path + "\n");
+        }
+        out.write("------\n");
+    }
+
+    // Byte count of everything written so far, for the fence offsets
+    private static class CountingOutput extends FilterOutputStream {
+        long count;
+
+        CountingOutput(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length == 0 || !args[0].equals("merge")) {
+            System.out.println("Usage: java ShardIndex merge [--output <dir>] <shard file>...");
+            return;
+        }
+        Path outputDir = Paths.get("outputjava");
+        List<Path> shards = new ArrayList<>();
+        for (int a = 1; a < args.length; a++) {
+            if (args[a].equals("--output")) outputDir = Paths.get(args[++a]);
+            else shards.add(Paths.get(args[a]));
+        }
+        Files.createDirectories(outputDir);
+        long t0 = System.nanoTime();
+        MergeResult result;
+        try (java.io.Writer out = Files.newBufferedWriter(outputDir.resolve("duplicates_merged.txt"),
+                java.nio.charset.StandardCharsets.UTF_8)) {
+            result = merge(shards, out);
+        }
+        // Same format as the score report of Main
+        long[] python = result.counts("python");
+        long[] java = result.counts("java");
+        String scoreReport = String.format(
+            "Python Duplication Score: %.2f (%d duplicate blocks / %d total blocks)\n" +
+            "Java Duplication Score: %.2f (%d duplicate blocks / %d total blocks)\n",
+            python[0] > 0 ? (double) python[1] / python[0] : 0.0, python[1], python[0],
+            java[0] > 0 ? (double) java[1] / java[0] : 0.0, java[1], java[0]
+        );
+        System.out.print(scoreReport);
+        try (PrintWriter out = new PrintWriter(outputDir.resolve("duplication_score.txt").toFile())) {
+            out.print(scoreReport);
+        }
+        System.out.printf("[Merge] %d shards, %d clone groups in %.1f ms -> %s\n",
+                shards.size(), result.groups, (System.nanoTime() - t0) / 1e6, outputDir);
+    }
+}
@@ -0,0 +1,113 @@
+// SourceFile.java
+// A source file read exactly once into a shared character buffer.
+// Blocks refer to it by offsets instead of holding copies of their text.
+// Place this file in the java/ directory.
+
+import java.io.*;
+import java.nio.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public final class SourceFile {
+    private static final AtomicInteger NEXT_ID = new AtomicInteger();
+
+    final int id;               // Small numeric id, unique within this run
+    final String path;
+    final CharBuffer text;      // Whole file, decoded once (read-only view)
+    final Fingerprint contentHash; // Hash of the raw bytes
+    private final int[] lineStarts; // Offset of the first character of each line
+
+    private SourceFile(String path, CharBuffer text, Fingerprint contentHash) {
+        this.id = NEXT_ID.getAndIncrement();
+        this.path = path;
+        this.text = text;
+        this.contentHash = contentHash;
+        this.lineStarts = computeLineStarts(text);
+    }
+
+    // Read the file, hash its raw bytes and decode it into a single shared buffer
+    // (a plain read: the text is decoded in full, so mapping the file would save nothing)
+    public static SourceFile read(Path file) throws IOException {
+        byte[] raw = Files.readAllBytes(file);
+        Fingerprint hash = Fingerprint.ofBytes(ByteBuffer.wrap(raw));
+        CharBuffer text = StandardCharsets.UTF_8.decode(ByteBuffer.wrap(raw)).asReadOnlyBuffer();
+        SourceFile source = new SourceFile(file.toString(), text, hash);
+        Metrics.count("bytes_read", raw.length);
+        Metrics.count("lines_read", source.lineCount());
+        return source;
+    }
+
+    // Wrap text that is already in memory
+    public static SourceFile of(String path, CharSequence content) {
+        CharBuffer text = CharBuffer.wrap(content.toString()).asReadOnlyBuffer();
+        return new SourceFile(path, text, Fingerprint.of(content));
+    }
+
+    public int lineCount() {
+        return lineStarts.length;
+    }
+
+    // Offset of the first character of a 1-based line
+    public int lineStart(int line) {
+        if (line <= 0) return 0;
+        return line > lineStarts.length ? text.length() : lineStarts[line - 1];
+    }
+
+    // Offset just past a 1-based line, including its line terminator
+    public int lineEnd(int line) {
+        return lineStart(line + 1);
+    }
+
+    // 1-based line containing the given offset
+    public int lineOf(int offset) {
+        int idx = Arrays.binarySearch(lineStarts, offset);
+        return idx >= 0 ? idx + 1 : -idx - 1;
+    }
+
+    // A view of text[start, end) that shares the buffer (no copy)
+    public CharSequence view(int start, int end) {
+        return text.subSequence(start, end);
+    }
+
+    // Materialize text[start, end) as a String
+    public String text(int start, int end) {
+        return text.subSequence(start, end).toString();
+    }
+
+    // The file split into lines (same rules as BufferedReader.readLine). Not retained.
+    public List<String> lines() {
+        List<String> lines = new ArrayList<>(lineStarts.length);
+        for (int i = 0; i < lineStarts.length; i++) {
+            int start = lineStarts[i];
+            int end = i + 1 < lineStarts.length ? lineStarts[i + 1] : text.length();
+            // Drop the line terminator (\n, \r or \r\n)
+            if (end > start && text.charAt(end - 1) == '\n') end--;
+            if (end > start && text.charAt(end - 1) == '\r') end--;
+            lines.add(text.subSequence(start, end).toString());
+        }
+        return lines;
+    }
+
+    private static int[] computeLineStarts(CharBuffer text) {
+        int n = text.length();
+        int[] starts = new int[16];
+        int count = 0;
+        int i = 0;
+        while (i < n) {
+            if (count == starts.length) starts = Arrays.copyOf(starts, count * 2);
+            starts[count++] = i;
+            // Find the end of this line
+            while (i < n) {
+                char c = text.charAt(i++);
+                if (c == '\n') break;
+                if (c == '\r') {
+                    if (i < n && text.charAt(i) == '\n') i++;
+                    break;
+                }
+            }
+        }
+        return Arrays.copyOf(starts, count);
+    }
+}
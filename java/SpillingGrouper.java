@@ -0,0 +1,235 @@
+// SpillingGrouper.java
+// Groups (fingerprint, ordinal) records by fingerprint within a fixed memory limit.
+// Records are kept in primitive arrays while they fit; past the limit they are
+// partitioned by fingerprint prefix into spill files on local disk and every partition
+// is grouped on its own (like the build side of an external hash join). A partition
+// that is still too large is split again on the next bits of the fingerprint.
+// Groups come out exactly as an in-memory LinkedHashMap would produce them: ordered by
+// their first record, records in the order they were added.
+// Usage: add records with increasing ordinals, call groups(), then close().
+// Place this file in the java/ directory.
+
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+
+public class SpillingGrouper implements Closeable {
+    static final int RECORD_BYTES = 20;       // lo, hi, ordinal in a spill file
+    static final int MEMORY_PER_RECORD = 48;  // Record arrays plus the grouping hash table
+    private static final int FANOUT_BITS = 6;
+    private static final int FANOUT = 1 << FANOUT_BITS;
+    private static final int MAX_LEVEL = 64 / FANOUT_BITS - 1;
+
+    private final long memoryLimit;
+    private final Path spillParent;
+    private final int capacity;   // Records held in memory before spilling
+
+    private long[] lo = new long[16];
+    private long[] hi = new long[16];
+    private int[] ord = new int[16];
+    private int size;
+
+    private Path spillDir;                   // Created on the first spill
+    private DataOutputStream[] partitions;   // Open while records are being added
+    private Path[] partitionFiles;
+    private long spilled;
+
+    // memoryLimit: bytes of grouping state to hold at once; spillDir: where spill files go
+    public SpillingGrouper(long memoryLimit, Path spillDir) {
+        this.memoryLimit = Math.max(memoryLimit, 1 << 20);
+        this.spillParent = spillDir;
+        this.capacity = (int) Math.min(Integer.MAX_VALUE - 8, this.memoryLimit / MEMORY_PER_RECORD);
+    }
+
+    public void add(Fingerprint fp, int ordinal) throws IOException {
+        if (partitions != null) {
+            write(partitions[partition(fp.lo, 0)], fp.lo, fp.hi, ordinal);
+            spilled++;
+            return;
+        }
+        if (size == capacity) {
+            spill();
+            add(fp, ordinal);
+            return;
+        }
+        if (size == lo.length) grow();
+        lo[size] = fp.lo;
+        hi[size] = fp.hi;
+        ord[size] = ordinal;
+        size++;
+    }
+
+    // Number of records written to disk (0 if everything fit in memory)
+    public long spilledRecords() {
+        return spilled;
+    }
+
+    // Ordinals of every fingerprint shared by two or more records, ordered by first ordinal
+    public List<int[]> groups() throws IOException {
+        List<int[]> groups = new ArrayList<>();
+        if (partitions == null) {
+            group(lo, hi, ord, size, groups);
+            return groups;
+        }
+        for (DataOutputStream out : partitions) out.close();
+        partitions = null;
+        for (Path file : partitionFiles) groupFile(file, 1, groups);
+        // Each partition is in first-occurrence order; restore the global order
+        groups.sort(Comparator.comparingInt(g -> g[0]));
+        return groups;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (partitions != null) {
+            for (DataOutputStream out : partitions) out.close();
+            partitions = null;
+        }
+        if (spillDir != null) {
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(spillDir)) {
+                for (Path file : files) Files.deleteIfExists(file);
+            }
+            Files.deleteIfExists(spillDir);
+            spillDir = null;
+        }
+    }
+
+    // Move the in-memory records into partition files and keep appending there
+    private void spill() throws IOException {
+        spillDir = Files.createTempDirectory(spillParent, "dd-spill");
+        partitionFiles = new Path[FANOUT];
+        partitions = openPartitions(spillDir, "p", partitionFiles);
+        for (int i = 0; i < size; i++) write(partitions[partition(lo[i], 0)], lo[i], hi[i], ord[i]);
+        spilled += size;
+        Metrics.count("spill_partitions", FANOUT);
+        lo = null;
+        hi = null;
+        ord = null;
+        size = 0;
+    }
+
+    // Group one partition file, splitting it on the next fingerprint bits if it does not fit
+    private void groupFile(Path file, int level, List<int[]> groups) throws IOException {
+        long records = Files.size(file) / RECORD_BYTES;
+        if (records > capacity && level <= MAX_LEVEL && split(file, level, groups)) return;
+        int n = (int) records;
+        long[] plo = new long[n];
+        long[] phi = new long[n];
+        int[] pord = new int[n];
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), bufferSize()))) {
+            for (int i = 0; i < n; i++) {
+                plo[i] = in.readLong();
+                phi[i] = in.readLong();
+                pord[i] = in.readInt();
+            }
+        }
+        Files.delete(file);
+        group(plo, phi, pord, n, groups);
+    }
+
+    // Split a partition in FANOUT sub-partitions; false if the bits do not separate it
+    private boolean split(Path file, int level, List<int[]> groups) throws IOException {
+        Path[] files = new Path[FANOUT];
+        DataOutputStream[] outs = openPartitions(spillDir, file.getFileName() + "-", files);
+        int[] counts = new int[FANOUT];
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), bufferSize()))) {
+            long records = Files.size(file) / RECORD_BYTES;
+            for (long i = 0; i < records; i++) {
+                long l = in.readLong();
+                long h = in.readLong();
+                int o = in.readInt();
+                int p = partition(l, level);
+                write(outs[p], l, h, o);
+                counts[p]++;
+            }
+        } finally {
+            for (DataOutputStream out : outs) out.close();
+        }
+        Metrics.count("spill_partitions", FANOUT);
+        int used = 0;
+        for (int c : counts) if (c > 0) used++;
+        if (used <= 1) {
+            // All records share these bits (e.g. one huge group): group the file as it is
+            for (Path f : files) Files.deleteIfExists(f);
+            return false;
+        }
+        Files.delete(file);
+        for (Path f : files) groupFile(f, level + 1, groups);
+        return true;
+    }
+
+    // Hash grouping over primitive arrays; records are in ordinal order, so groups
+    // are created in first-occurrence order and keep their records in order
+    static void group(long[] lo, long[] hi, int[] ord, int n, List<int[]> groups) {
+        int tableSize = Integer.highestOneBit(Math.max(2, n) * 2 - 1) << 1;
+        int mask = tableSize - 1;
+        int[] table = new int[tableSize];  // Group id + 1, 0 = empty
+        int[] first = new int[n];          // Group -> first record
+        int[] last = new int[n];           // Group -> last record
+        int[] count = new int[n];
+        int[] next = new int[n];           // Record -> next record of its group, -1 at the end
+        int groupCount = 0;
+        for (int i = 0; i < n; i++) {
+            int slot = (int) (lo[i] ^ (lo[i] >>> 32)) & mask;
+            int g;
+            while (true) {
+                g = table[slot] - 1;
+                if (g < 0) {
+                    g = groupCount++;
+                    table[slot] = g + 1;
+                    first[g] = i;
+                    last[g] = i;
+                    break;
+                }
+                int r = first[g];
+                if (lo[r] == lo[i] && hi[r] == hi[i]) {
+                    next[last[g]] = i;
+                    last[g] = i;
+                    break;
+                }
+                slot = (slot + 1) & mask;
+            }
+            next[i] = -1;
+            count[g]++;
+        }
+        for (int g = 0; g < groupCount; g++) {
+            if (count[g] < 2) continue;
+            int[] members = new int[count[g]];
+            int k = 0;
+            for (int r = first[g]; r >= 0; r = next[r]) members[k++] = ord[r];
+            groups.add(members);
+        }
+    }
+
+    private DataOutputStream[] openPartitions(Path dir, String prefix, Path[] files) throws IOException {
+        DataOutputStream[] outs = new DataOutputStream[FANOUT];
+        for (int p = 0; p < FANOUT; p++) {
+            files[p] = dir.resolve(prefix + p);
+            outs[p] = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(files[p]), bufferSize()));
+        }
+        return outs;
+    }
+
+    // Stream buffers of all open partitions together stay within a quarter of the limit
+    private int bufferSize() {
+        return (int) Math.max(4096, Math.min(1 << 16, memoryLimit / (4 * FANOUT)));
+    }
+
+    // Partition of a fingerprint at a split level, from the top bits of its primary hash down
+    private static int partition(long lo, int level) {
+        return (int) (lo >>> (64 - FANOUT_BITS * (level + 1))) & (FANOUT - 1);
+    }
+
+    private static void write(DataOutputStream out, long lo, long hi, int ordinal) throws IOException {
+        out.writeLong(lo);
+        out.writeLong(hi);
+        out.writeInt(ordinal);
+    }
+
+    private void grow() {
+        int n = (int) Math.min(capacity, (long) lo.length * 2);
+        lo = Arrays.copyOf(lo, n);
+        hi = Arrays.copyOf(hi, n);
+        ord = Arrays.copyOf(ord, n);
+    }
+}
@@ -0,0 +1,131 @@
+// StructuralHash.java
+// Merkle-style hashes of every node of a JavaParser AST, computed bottom-up in one pass.
+// A node's hash combines its kind, its own attributes (identifier, literal value, operator,
+// modifier keyword, primitive type) and the hashes of its children in order, so equal
+// subtrees get equal hashes at any granularity: statements, blocks, lambdas, methods, classes.
+// Comments are not part of the tree. With anonymize, every identifier hashes the same,
+// so clones that only differ in names are grouped together.
+// Place this file in the java/ directory.
+
+import com.github.javaparser.ast.*;
+import com.github.javaparser.ast.body.*;
+import com.github.javaparser.ast.comments.Comment;
+import com.github.javaparser.ast.expr.*;
+import com.github.javaparser.ast.stmt.SwitchEntry;
+import com.github.javaparser.ast.type.PrimitiveType;
+import java.util.*;
+
+public final class StructuralHash {
+    // Hash of an absent subtree (e.g. the body of an abstract method)
+    static final Fingerprint EMPTY = new Fingerprint(0x6a09e667f3bcc908L, 0xbb67ae8584caa73bL);
+
+    private static final long P1 = 0x9e3779b97f4a7c15L;
+    private static final long P2 = 0xc2b2ae3d27d4eb4fL;
+
+    private final boolean anonymize;
+    private final List<Node> nodes = new ArrayList<>();  // Pre-order
+    private final Map<Node, Fingerprint> hashes = new IdentityHashMap<>();
+    private final Map<Node, Integer> sizes = new IdentityHashMap<>();
+
+    // Hash every node under root
+    public StructuralHash(Node root, boolean anonymize) {
+        this.anonymize = anonymize;
+        // Pre-order with an explicit stack: deep expression chains must not overflow the call stack
+        Deque<Node> stack = new ArrayDeque<>();
+        stack.push(root);
+        while (!stack.isEmpty()) {
+            Node node = stack.pop();
+            nodes.add(node);
+            List<Node> children = node.getChildNodes();
+            for (int i = children.size() - 1; i >= 0; i--) {
+                if (!(children.get(i) instanceof Comment)) stack.push(children.get(i));
+            }
+        }
+        // Reverse pre-order visits every child before its parent
+        for (int i = nodes.size() - 1; i >= 0; i--) hash(nodes.get(i));
+    }
+
+    // All hashed nodes, in pre-order (the order of Node.findAll)
+    public List<Node> nodes() {
+        return nodes;
+    }
+
+    public Fingerprint of(Node node) {
+        return hashes.get(node);
+    }
+
+    // Number of nodes in the subtree
+    public int size(Node node) {
+        return sizes.getOrDefault(node, 0);
+    }
+
+    private void hash(Node node) {
+        long a = P1;
+        long b = P2;
+        String kind = node.getClass().getSimpleName();
+        a = step(a, kind.hashCode());
+        b = step2(b, kind.hashCode());
+        String attribute = attribute(node);
+        if (attribute != null) {
+            for (int i = 0; i < attribute.length(); i++) {
+                a = step(a, attribute.charAt(i));
+                b = step2(b, attribute.charAt(i));
+            }
+            a = step(a, attribute.length());
+            b = step2(b, attribute.length());
+        }
+        int size = 1;
+        int count = 0;
+        for (Node child : node.getChildNodes()) {
+            Fingerprint h = hashes.get(child);
+            if (h == null) continue; // Comment
+            a = step(a, h.lo);
+            b = step2(b, h.hi);
+            size += sizes.get(child);
+            count++;
+        }
+        a = step(a, count);
+        b = step2(b, count);
+        hashes.put(node, new Fingerprint(mix(a), mix(b)));
+        sizes.put(node, size);
+    }
+
+    // The part of a node that is not one of its children
+    private String attribute(Node node) {
+        if (node instanceof SimpleName) return anonymize ? "$" : ((SimpleName) node).getIdentifier();
+        if (node instanceof Name) return anonymize ? "$" : ((Name) node).getIdentifier();
+        if (node instanceof MethodReferenceExpr) return anonymize ? "$" : ((MethodReferenceExpr) node).getIdentifier();
+        if (node instanceof LiteralStringValueExpr) return ((LiteralStringValueExpr) node).getValue();
+        if (node instanceof BooleanLiteralExpr) return String.valueOf(((BooleanLiteralExpr) node).getValue());
+        if (node instanceof BinaryExpr) return ((BinaryExpr) node).getOperator().name();
+        if (node instanceof UnaryExpr) return ((UnaryExpr) node).getOperator().name();
+        if (node instanceof AssignExpr) return ((AssignExpr) node).getOperator().name();
+        if (node instanceof Modifier) return ((Modifier) node).getKeyword().name();
+        if (node instanceof PrimitiveType) return ((PrimitiveType) node).getType().name();
+        if (node instanceof SwitchEntry) return ((SwitchEntry) node).getType().name();
+        if (node instanceof ClassOrInterfaceDeclaration) return ((ClassOrInterfaceDeclaration) node).isInterface() ? "interface" : "class";
+        if (node instanceof ImportDeclaration) {
+            ImportDeclaration imp = (ImportDeclaration) node;
+            return (imp.isStatic() ? "static " : "") + (imp.isAsterisk() ? "*" : "");
+        }
+        return null;
+    }
+
+    private static long step(long h, long v) {
+        return Long.rotateLeft((h ^ v) * P1, 31) * P2;
+    }
+
+    private static long step2(long h, long v) {
+        return Long.rotateLeft((h + v) * P2, 27) * P1 + 0x52dce729;
+    }
+
+    // MurmurHash3 fmix64 finalizer
+    private static long mix(long k) {
+        k ^= k >>> 33;
+        k *= 0xff51afd7ed558ccdL;
+        k ^= k >>> 33;
+        k *= 0xc4ceb9fe1a85ec53L;
+        k ^= k >>> 33;
+        return k;
+    }
+}
@@ -0,0 +1,191 @@
+// TokenTable.java
+// Symbol table that interns tokens (identifiers, keywords, literals, punctuation)
+// into dense int ids, so a block becomes a compact int[] token stream and
+// hashing, equality and similarity run over primitive arrays instead of strings.
+// Identifiers can optionally be canonicalized to placeholder ids (first distinct
+// identifier -> <id0>, next -> <id1>, ...), so consistently renamed code yields
+// the same stream. Ids are only meaningful within one table; anything persisted
+// (index, baselines) keeps using the character-based Fingerprint.
+// Place this file in the java/ directory.
+
+import java.util.*;
+
+public final class TokenTable {
+    // Token ids of a range of code plus the (range-relative, 1-based) line of each token
+    public static final class Stream {
+        final int[] tokens;
+        final int[] lines;
+
+        Stream(int[] tokens, int[] lines) {
+            this.tokens = tokens;
+            this.lines = lines;
+        }
+
+        public int length() {
+            return tokens.length;
+        }
+    }
+
+    private static final Set<String> JAVA_KEYWORDS = new HashSet<>(Arrays.asList(
+            "abstract", "assert", "boolean", "break", "byte", "case", "catch", "char", "class", "const",
+            "continue", "default", "do", "double", "else", "enum", "extends", "final", "finally", "float",
+            "for", "goto", "if", "implements", "import", "instanceof", "int", "interface", "long", "native",
+            "new", "package", "private", "protected", "public", "return", "short", "static", "strictfp",
+            "super", "switch", "synchronized", "this", "throw", "throws", "transient", "try", "void",
+            "volatile", "while", "var", "record", "yield", "true", "false", "null"));
+    private static final Set<String> PYTHON_KEYWORDS = new HashSet<>(Arrays.asList(
+            "False", "None", "True", "and", "as", "assert", "async", "await", "break", "class", "continue",
+            "def", "del", "elif", "else", "except", "finally", "for", "from", "global", "if", "import",
+            "in", "is", "lambda", "nonlocal", "not", "or", "pass", "raise", "return", "try", "while",
+            "with", "yield", "self", "true", "false", "none"));
+
+    private final boolean canonicalize;
+
+    // Symbols: characters stored back to back in one pool
+    private char[] pool = new char[1 << 12];
+    private int poolSize;
+    private int[] symStart = new int[256];
+    private int[] symLength = new int[256];
+    private int[] symHash = new int[256];
+    private byte[] symKeyword = new byte[256]; // Bit 0: Java keyword, bit 1: Python keyword
+    private int count;
+
+    // Open-addressing hash table of symbol ids + 1 (0 = empty slot)
+    private int[] slots = new int[512];
+
+    // Placeholder ids for canonicalized identifiers, by position of first occurrence
+    private int[] placeholders = new int[0];
+    // Per-stream renaming, reset without clearing by bumping the stamp
+    private int[] renameStamp = new int[256];
+    private int[] renameTo = new int[256];
+    private int stamp;
+    // Scratch buffers reused across tokenize calls (the result is copied out at its exact size)
+    private int[] scratchTokens = new int[256];
+    private int[] scratchLines = new int[256];
+
+    public TokenTable(boolean canonicalizeIdentifiers) {
+        this.canonicalize = canonicalizeIdentifiers;
+    }
+
+    // Number of distinct symbols interned so far
+    public synchronized int size() {
+        return count;
+    }
+
+    // Text of a symbol id
+    public synchronized String symbol(int id) {
+        return new String(pool, symStart[id], symLength[id]);
+    }
+
+    // Intern text[start, stop) (lowercased if requested) and return its id
+    public synchronized int intern(CharSequence text, int start, int stop, boolean lowerCase) {
+        int h = 0;
+        for (int i = start; i < stop; i++) h = 31 * h + fold(text.charAt(i), lowerCase);
+        h ^= h >>> 16;
+        int mask = slots.length - 1;
+        for (int slot = h & mask; ; slot = (slot + 1) & mask) {
+            int id = slots[slot] - 1;
+            if (id < 0) return add(text, start, stop, lowerCase, h, slot);
+            if (symHash[id] == h && sameText(id, text, start, stop, lowerCase)) return id;
+        }
+    }
+
+    // Token stream of a block's code
+    public Stream tokenize(CodeBlock block) {
+        CharSequence code = block.codeView();
+        return tokenize(code, 0, code.length(), CodeNormalizer.Language.of(block.language), true);
+    }
+
+    // Token stream of text[start, end). String literals are never lowercased.
+    public synchronized Stream tokenize(CharSequence code, int start, int end, CodeNormalizer.Language lang,
+                                        boolean lowerCase) {
+        CodeTokenizer tok = new CodeTokenizer(code, start, end, lang);
+        int[] tokens = scratchTokens;
+        int[] lines = scratchLines;
+        int n = 0;
+        int keywordBit = lang == CodeNormalizer.Language.JAVA ? 1 : lang == CodeNormalizer.Language.PYTHON ? 2 : 3;
+        int nextPlaceholder = 0;
+        stamp++;
+        while (tok.next()) {
+            int id = intern(code, tok.start, tok.stop, lowerCase && tok.kind != CodeTokenizer.STRING);
+            if (canonicalize && tok.kind == CodeTokenizer.WORD && (symKeyword[id] & keywordBit) == 0) {
+                // Rename identifiers consistently within this stream
+                if (renameStamp[id] != stamp) {
+                    renameStamp[id] = stamp;
+                    renameTo[id] = placeholder(nextPlaceholder++);
+                }
+                id = renameTo[id];
+            }
+            if (n == tokens.length) {
+                tokens = scratchTokens = Arrays.copyOf(tokens, n * 2);
+                lines = scratchLines = Arrays.copyOf(lines, n * 2);
+            }
+            tokens[n] = id;
+            lines[n] = tok.tokenLine;
+            n++;
+        }
+        return new Stream(Arrays.copyOf(tokens, n), Arrays.copyOf(lines, n));
+    }
+
+    // Id of the k-th identifier placeholder ("<idK>" can never be a real token)
+    private int placeholder(int k) {
+        if (k >= placeholders.length) {
+            int old = placeholders.length;
+            placeholders = Arrays.copyOf(placeholders, Math.max(16, k * 2));
+            for (int i = old; i < placeholders.length; i++) {
+                String name = "<id" + i + ">";
+                placeholders[i] = intern(name, 0, name.length(), false);
+            }
+        }
+        return placeholders[k];
+    }
+
+    private int add(CharSequence text, int start, int stop, boolean lowerCase, int h, int slot) {
+        int len = stop - start;
+        if (poolSize + len > pool.length) pool = Arrays.copyOf(pool, Math.max(pool.length * 2, poolSize + len));
+        for (int i = 0; i < len; i++) pool[poolSize + i] = fold(text.charAt(start + i), lowerCase);
+        if (count == symStart.length) {
+            int cap = count * 2;
+            symStart = Arrays.copyOf(symStart, cap);
+            symLength = Arrays.copyOf(symLength, cap);
+            symHash = Arrays.copyOf(symHash, cap);
+            symKeyword = Arrays.copyOf(symKeyword, cap);
+            renameStamp = Arrays.copyOf(renameStamp, cap);
+            renameTo = Arrays.copyOf(renameTo, cap);
+        }
+        int id = count++;
+        symStart[id] = poolSize;
+        symLength[id] = len;
+        symHash[id] = h;
+        String s = new String(pool, poolSize, len);
+        symKeyword[id] = (byte) ((JAVA_KEYWORDS.contains(s) ? 1 : 0) | (PYTHON_KEYWORDS.contains(s) ? 2 : 0));
+        poolSize += len;
+        slots[slot] = id + 1;
+        if (count * 2 > slots.length) rehash();
+        return id;
+    }
+
+    private void rehash() {
+        int[] bigger = new int[slots.length * 2];
+        int mask = bigger.length - 1;
+        for (int id = 0; id < count; id++) {
+            int slot = symHash[id] & mask;
+            while (bigger[slot] != 0) slot = (slot + 1) & mask;
+            bigger[slot] = id + 1;
+        }
+        slots = bigger;
+    }
+
+    private boolean sameText(int id, CharSequence text, int start, int stop, boolean lowerCase) {
+        if (symLength[id] != stop - start) return false;
+        int base = symStart[id];
+        for (int i = start; i < stop; i++) {
+            if (pool[base + i - start] != fold(text.charAt(i), lowerCase)) return false;
+        }
+        return true;
+    }
+
+    private static char fold(char c, boolean lowerCase) {
+        return lowerCase ? Character.toLowerCase(c) : c;
+    }
+}
@@ -0,0 +1,187 @@
+// Watcher.java
+// Watch mode: scans the given directories once, then follows file changes through
+// java.nio.file.WatchService. A changed file is re-extracted on its own, its old
+// fingerprints are retracted from the DuplicateIndex and the new ones inserted, and
+// only the delta is printed: new clone groups, resolved groups and changed scores.
+// Usage: java Watcher <dir>... [--include <glob>]... [--exclude <glob>]...
+//                     [--threads <n>] [--debounce <ms, default 100>]
+// Place this file in the java/ directory.
+
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+import static java.nio.file.StandardWatchEventKinds.*;
+
+public class Watcher {
+    private static final int MAX_LISTED = 5; // Blocks listed per new group
+
+    private final DirectoryScanner scanner;
+    private final List<Path> roots;
+    private final long debounceMillis;
+    private final DuplicateIndex index = new DuplicateIndex();
+    private final WatchService service;
+    private final Map<WatchKey, Path> dirs = new HashMap<>();
+    private final Map<Path, Path> rootOf = new HashMap<>(); // Watched directory -> scan root
+
+    public Watcher(DirectoryScanner scanner, List<Path> roots, long debounceMillis) throws IOException {
+        this.scanner = scanner;
+        this.roots = roots;
+        this.debounceMillis = debounceMillis;
+        this.service = FileSystems.getDefault().newWatchService();
+    }
+
+    // Index everything under the roots and start watching their directories
+    public void start() throws IOException {
+        long t0 = System.nanoTime();
+        for (Path root : roots) register(root, root);
+        List<Path> files = scanner.listFiles(roots);
+        List<List<CodeBlock>> perFile = scanner.extractEach(files);
+        for (int i = 0; i < files.size(); i++) index.put(files.get(i), perFile.get(i));
+        System.out.printf("[Watch] %d files, %d blocks, %d duplicate groups indexed in %.1f ms; watching %d directories\n",
+                index.fileCount(), index.blockCount(), index.groupCount(), (System.nanoTime() - t0) / 1e6, dirs.size());
+        for (Map.Entry<String, Double> e : index.scores().entrySet()) {
+            System.out.printf("  %s score: %.2f\n", e.getKey(), e.getValue());
+        }
+    }
+
+    // Process change events until interrupted. Events arriving within the debounce
+    // window are coalesced, so an editor's save burst updates each file once.
+    public void run() throws IOException, InterruptedException {
+        while (true) {
+            WatchKey key = service.take();
+            Set<Path> changed = new TreeSet<>();
+            boolean overflow = collect(key, changed);
+            while ((key = service.poll(debounceMillis, TimeUnit.MILLISECONDS)) != null) {
+                overflow |= collect(key, changed);
+            }
+            if (overflow) {
+                // Events were lost: reconcile every file under the roots, plus everything indexed
+                System.out.println("[Watch] event overflow, re-checking all files");
+                changed.addAll(scanner.listFiles(roots));
+                changed.addAll(index.files());
+            }
+            // Relative event paths and absolute index paths may name the same file
+            Set<Path> unique = new TreeSet<>();
+            for (Path file : changed) unique.add(file.toAbsolutePath().normalize());
+            for (Path file : unique) update(file);
+            System.out.flush();
+        }
+    }
+
+    // Re-extract (or drop) one file and print what changed
+    void update(Path file) {
+        long t0 = System.nanoTime();
+        DuplicateIndex.Delta delta;
+        int blocks = 0;
+        if (Files.isRegularFile(file)) {
+            List<CodeBlock> extracted;
+            try {
+                extracted = Main.extractBlocks(file.toString());
+            } catch (IOException e) {
+                System.out.println("Cannot read: " + file + " (" + e.getMessage() + ")");
+                return;
+            }
+            DuplicateDetection.fingerprintAll(extracted);
+            blocks = extracted.size();
+            delta = index.put(file, extracted);
+        } else {
+            delta = index.remove(file);
+            if (delta == null) return; // Never indexed
+        }
+        double ms = (System.nanoTime() - t0) / 1e6;
+        if (Files.isRegularFile(file)) {
+            System.out.printf("[Changed] %s: %d blocks (%.1f ms)\n", file, blocks, ms);
+        } else {
+            System.out.printf("[Deleted] %s (%.1f ms)\n", file, ms);
+        }
+        printDelta(delta);
+    }
+
+    private void printDelta(DuplicateIndex.Delta delta) {
+        if (delta.isEmpty()) {
+            System.out.println("  no change in duplicate groups");
+            return;
+        }
+        for (Fingerprint fp : delta.created) {
+            List<DuplicateIndex.IndexedBlock> group = index.group(fp);
+            System.out.printf("  + new group %s (%d blocks)\n", fp.toHex(), group.size());
+            for (DuplicateIndex.IndexedBlock b : group.subList(0, Math.min(group.size(), MAX_LISTED))) {
+                System.out.printf("      %s %s (%d-%d) %s\n", b.language, b.name, b.startLine, b.endLine, b.path);
+            }
+            if (group.size() > MAX_LISTED) System.out.printf("      ... %d more\n", group.size() - MAX_LISTED);
+        }
+        for (Fingerprint fp : delta.resolved) {
+            System.out.printf("  - resolved group %s\n", fp.toHex());
+        }
+        for (Fingerprint fp : delta.resized) {
+            System.out.printf("  ~ group %s now has %d blocks\n", fp.toHex(), index.group(fp).size());
+        }
+        for (Map.Entry<String, double[]> e : delta.scores.entrySet()) {
+            System.out.printf("  %s score: %.2f -> %.2f\n", e.getKey(), e.getValue()[0], e.getValue()[1]);
+        }
+    }
+
+    // Drain one key's events into the set of changed files; returns true on overflow
+    private boolean collect(WatchKey key, Set<Path> changed) throws IOException {
+        Path dir = dirs.get(key);
+        boolean overflow = false;
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == OVERFLOW) {
+                overflow = true;
+                continue;
+            }
+            if (dir == null) continue;
+            Path child = dir.resolve((Path) event.context());
+            Path root = rootOf.get(dir);
+            if (event.kind() == ENTRY_CREATE && Files.isDirectory(child)) {
+                // New directory: watch it and pick up files that were created before it was watched
+                register(child, root);
+                changed.addAll(scanner.listFiles(Collections.singletonList(child)));
+            } else if (event.kind() == ENTRY_DELETE && !DirectoryScanner.isSupported(child)) {
+                // Possibly a deleted directory: drop whatever was indexed under it
+                for (Path file : index.files()) {
+                    if (file.startsWith(child.toAbsolutePath().normalize())) changed.add(file);
+                }
+            } else if (scanner.accepts(root, child)) {
+                changed.add(child);
+            }
+        }
+        if (!key.reset()) dirs.remove(key);
+        return overflow;
+    }
+
+    private void register(Path start, Path root) throws IOException {
+        for (Path dir : scanner.listDirectories(Collections.singletonList(start))) {
+            WatchKey key = dir.register(service, ENTRY_CREATE, ENTRY_MODIFY, ENTRY_DELETE);
+            dirs.put(key, dir);
+            rootOf.put(dir, root);
+        }
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        List<Path> roots = new ArrayList<>();
+        List<String> includes = new ArrayList<>();
+        List<String> excludes = new ArrayList<>();
+        int threads = 0;
+        long debounce = 100;
+        for (int a = 0; a < args.length; a++) {
+            switch (args[a]) {
+                case "--include": includes.add(args[++a]); break;
+                case "--exclude": excludes.add(args[++a]); break;
+                case "--threads": threads = Integer.parseInt(args[++a]); break;
+                case "--debounce": debounce = Long.parseLong(args[++a]); break;
+                default: roots.add(Paths.get(args[a]));
+            }
+        }
+        if (roots.isEmpty()) {
+            System.out.println("Usage: java Watcher <dir>... [--include <glob>]... [--exclude <glob>]... "
+                    + "[--threads <n>] [--debounce <ms>]");
+            return;
+        }
+        Watcher watcher = new Watcher(new DirectoryScanner(includes, excludes, threads, 64), roots, debounce);
+        watcher.start();
+        watcher.run();
+    }
+}
@@ -0,0 +1,27 @@
+#!/bin/bash
+set -e
+
+# Usage: ./run_benchmarks.sh [size_mb=16] [dup_ratio=0.2] [seed=42] [extra Benchmarks args...]
+SIZE_MB=${1:-16}
+DUP_RATIO=${2:-0.2}
+SEED=${3:-42}
+shift $(( $# < 3 ? $# : 3 ))
+
+JAR_VERSION=3.25.4
+JAR_NAME=javaparser-core-$JAR_VERSION.jar
+LIB_DIR="lib"
+JAVA_DIR="java"
+BUILD_DIR="build/bench"
+CORPUS_DIR="build/corpus-${SIZE_MB}mb-${DUP_RATIO}-${SEED}"
+
+# Compile all sources into a separate directory
+mkdir -p "$BUILD_DIR"
+javac -d "$BUILD_DIR" -cp "$LIB_DIR/$JAR_NAME" "$JAVA_DIR"/*.java
+
+# Generate the corpus once per (size, ratio, seed)
+if [ ! -d "$CORPUS_DIR" ]; then
+    java -cp "$BUILD_DIR" CorpusGenerator "$CORPUS_DIR" "$SIZE_MB" "$DUP_RATIO" "$SEED"
+fi
+
+# Run the benchmarks
+java -Xms1g -cp "$BUILD_DIR:$LIB_DIR/$JAR_NAME" Benchmarks "$CORPUS_DIR" "$@"